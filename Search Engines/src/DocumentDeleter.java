@@ -0,0 +1,147 @@
+import io.DeletedDocuments;
+import io.DocIdMappingRunReader;
+import io.DocumentSerializer;
+import io.DocumentTable;
+import io.IndexRunReader;
+import io.MappedLexicon;
+import io.Util;
+import model.Document;
+import model.Lexicon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Takes documents down from an index without rebuilding it.
+ * Deleting marks documents in the deleted documents file, and searches skip them from then on; their postings stay
+ * in the index, and the lexicon, document count and average document length still count them, so the stored
+ * maximum scores remain bounds on the scores of the documents left. Compacting purges the postings of the deleted
+ * documents and renumbers the rest, rewriting the index with the document frequencies and statistics of the
+ * documents left, and empties the deleted documents file.
+ */
+public class DocumentDeleter {
+    // Suffix of the files a compaction writes before they replace the files of the index
+    private static final String COMPACTED_SUFFIX = ".compact";
+
+    /**
+     * Marks the documents with any of the given URLs deleted.
+     * @param documentTablePath Path of the document table.
+     * @param deletedDocumentsPath Path of the deleted documents file.
+     * @param urls URLs of the documents to delete.
+     * @return Number of documents deleted.
+     * @throws IOException If the document table cannot be read or the deleted documents file written.
+     */
+    public static int deleteDocuments(String documentTablePath, String deletedDocumentsPath, Set<String> urls) throws IOException {
+        BitSet deletedDocuments = DeletedDocuments.read(deletedDocumentsPath);
+        int deletedCount = DeletedDocuments.markDeleted(DocumentTable.open(documentTablePath), urls, deletedDocuments);
+        if (deletedCount > 0) {
+            DeletedDocuments.write(deletedDocuments, deletedDocumentsPath);
+        }
+        return deletedCount;
+    }
+
+    /**
+     * Rewrites an index without the deleted documents, numbering the documents left in their current order.
+     * The lists are read back from the index and built again, so nothing is parsed again; the impact-ordered index
+     * is rebuilt from the new index if there is one. The files of the index are only replaced once every file has been
+     * rebuilt, and the deleted documents file is only emptied once they all have been.
+     * @param indexFilePath Path of the inverted index file.
+     * @param lexiconPath Path of the lexicon file.
+     * @param documentTablePath Path of the document table.
+     * @param positionsFilePath Path of the positions file, or null if the index has none.
+     * @param documentDataPath Path of document_data.ser, or null if there is none.
+     * @param impactIndexPath Path of the impact index file, or null if there is none.
+     * @param deletedDocumentsPath Path of the deleted documents file.
+     * @return Number of documents purged.
+     * @throws IOException If the index cannot be read or rewritten; the index and the deleted documents file are then
+     *                     left as they were, unless replacing the rebuilt files fails.
+     */
+    public static int compactIndex(String indexFilePath, String lexiconPath, String documentTablePath, String positionsFilePath,
+                                   String documentDataPath, String impactIndexPath, String deletedDocumentsPath) throws IOException {
+        BitSet deletedDocuments = DeletedDocuments.read(deletedDocumentsPath);
+        if (deletedDocuments.isEmpty()) {
+            return 0;
+        }
+
+        DocumentTable table = DocumentTable.open(documentTablePath);
+        int[] newDocIds = DocIdMappingRunReader.compactDocIds(table.getDocumentCount(), deletedDocuments, 0);
+        List<Document> documents = new ArrayList<>(table.getDocumentCount() - deletedDocuments.cardinality());
+        for (int docId = 0; docId < table.getDocumentCount(); docId++) {
+            if (newDocIds[docId] != DocIdMappingRunReader.DROPPED) {
+                documents.add(new Document(newDocIds[docId], table.getUrl(docId), table.getTermCount(docId)));
+            }
+        }
+        String[] filePaths = {indexFilePath, positionsFilePath, documentTablePath, impactIndexPath, lexiconPath};
+        try {
+            DocumentTable.write(documents, documentTablePath + COMPACTED_SUFFIX);
+
+            // Document frequencies, block maxima and list maxima are all computed anew from the postings left
+            Map<String, Lexicon> lexiconMap = MappedLexicon.open(lexiconPath);
+            try (DocIdMappingRunReader postings = new DocIdMappingRunReader(
+                    new IndexRunReader(indexFilePath, lexiconMap, positionsFilePath), newDocIds)) {
+                InvertedIndexBuilder.createCompressedIndex(postings, indexFilePath + COMPACTED_SUFFIX, lexiconPath + COMPACTED_SUFFIX,
+                        documentTablePath + COMPACTED_SUFFIX, positionsFilePath == null ? null : positionsFilePath + COMPACTED_SUFFIX);
+            }
+            // Built from the compacted files, so it adds its offsets to the compacted lexicon
+            if (impactIndexPath != null) {
+                ImpactIndexBuilder.createImpactIndex(indexFilePath + COMPACTED_SUFFIX, lexiconPath + COMPACTED_SUFFIX,
+                        documentTablePath + COMPACTED_SUFFIX, impactIndexPath + COMPACTED_SUFFIX, 1.5, 0.75);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (String filePath : filePaths) {
+                if (filePath != null) {
+                    Files.deleteIfExists(Paths.get(filePath + COMPACTED_SUFFIX));
+                }
+            }
+            throw e;
+        }
+
+        // The lexicon goes last, so it never points into files that have not been replaced yet
+        for (String filePath : filePaths) {
+            if (filePath != null) {
+                Files.move(Paths.get(filePath + COMPACTED_SUFFIX), Paths.get(filePath),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        if (documentDataPath != null) {
+            DocumentSerializer.serializeDocumentList(documents, documentDataPath);
+        }
+        Files.delete(Paths.get(deletedDocumentsPath));
+        return deletedDocuments.cardinality();
+    }
+
+    // DocumentDeleter delete <url>...: marks the documents deleted; DocumentDeleter compact: purges the deleted documents
+    public static void main(String[] args) {
+        String invertedIndexFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/inverted_index.bin";
+        String lexiconFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/lexicon.bin";
+        String documentTableFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_table.bin";
+        String positionsFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/positions.bin";
+        String documentDataFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_data.ser";
+        String impactIndexFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/impact_index.bin";
+        String deletedDocumentsFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/deleted_docs.bin";
+
+        long startTime = System.currentTimeMillis();
+        try {
+            if (args.length > 0 && args[0].equals("compact")) {
+                int purgedCount = compactIndex(invertedIndexFilePath, lexiconFilePath, documentTableFilePath,
+                        new File(positionsFilePath).exists() ? positionsFilePath : null,
+                        new File(documentDataFilePath).exists() ? documentDataFilePath : null,
+                        new File(impactIndexFilePath).exists() ? impactIndexFilePath : null,
+                        deletedDocumentsFilePath);
+                System.out.println("Purged " + purgedCount + " deleted documents in: " + Util.formatTime(System.currentTimeMillis() - startTime));
+            } else if (args.length > 1 && args[0].equals("delete")) {
+                Set<String> urls = new HashSet<>(Arrays.asList(args).subList(1, args.length));
+                int deletedCount = deleteDocuments(documentTableFilePath, deletedDocumentsFilePath, urls);
+                System.out.println("Deleted " + deletedCount + " documents");
+            } else {
+                System.out.println("Usage: DocumentDeleter delete <url>... | DocumentDeleter compact");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
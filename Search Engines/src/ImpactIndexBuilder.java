@@ -0,0 +1,102 @@
+import io.DocumentTable;
+import io.ImpactListWriter;
+import io.IndexWriter;
+import io.InvertedIndexAccessor;
+import io.LexiconWriter;
+import io.MappedLexicon;
+import io.Util;
+import model.Lexicon;
+import model.TermIndexList;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Builds the impact-ordered index from the docId-ordered one.
+ * The BM25 score of every posting is computed once here, quantized to 8 bits and stored in place of the frequency,
+ * so a score-at-a-time query only adds small integers. The lexicon is rewritten with the position of every term's
+ * impact-ordered list.
+ */
+public class ImpactIndexBuilder {
+
+    /**
+     * Builds the impact-ordered index.
+     * @param indexFilePath Path of the inverted index file.
+     * @param lexiconPath Path of the lexicon file, rewritten with the impact offsets.
+     * @param documentTablePath Path of the document table.
+     * @param impactIndexPath Path of the impact index file.
+     * @param k1 BM25 term frequency saturation.
+     * @param b BM25 length normalization.
+     * @throws IOException If the build fails; the lexicon is then left as it was and no impact index file is left behind.
+     */
+    public static void createImpactIndex(String indexFilePath, String lexiconPath, String documentTablePath,
+                                         String impactIndexPath, double k1, double b) throws IOException {
+        Map<String, Lexicon> lexiconMap = MappedLexicon.open(lexiconPath);
+        // The new lexicon replaces the mapped one only once it is complete
+        try (RandomAccessFile indexFile = new RandomAccessFile(indexFilePath, "r");
+             IndexWriter impactFile = new IndexWriter(impactIndexPath);
+             LexiconWriter impactLexicon = new LexiconWriter(lexiconPath)) {
+            DocumentTable documents = DocumentTable.open(documentTablePath);
+            int totalDocs = documents.getDocumentCount();
+            double averageDocLength = documents.getAverageTermCount();
+
+            // No posting scores more than the largest idf times (k1 + 1), the limit of the frequency factor
+            int minDocFrequency = Integer.MAX_VALUE;
+            for (Lexicon lexicon : lexiconMap.values()) {
+                minDocFrequency = Math.min(minDocFrequency, lexicon.getDocumentFrequency());
+            }
+            double maxScore = Math.log((totalDocs - minDocFrequency + 0.5) / (minDocFrequency + 0.5)) * (k1 + 1);
+            ImpactListWriter listWriter = new ImpactListWriter(impactFile, maxScore);
+
+            // Lists are read in the order they were written, the term order of the lexicon
+            int[] docIds = new int[1 << 10];
+            int[] impacts = new int[1 << 10];
+            for (Map.Entry<String, Lexicon> entry : lexiconMap.entrySet()) {
+                Lexicon lexicon = entry.getValue();
+                if (docIds.length < lexicon.getDocumentFrequency()) {
+                    docIds = new int[lexicon.getDocumentFrequency()];
+                    impacts = new int[lexicon.getDocumentFrequency()];
+                }
+                TermIndexList termList = InvertedIndexAccessor.openList(entry.getKey(), lexicon, indexFile);
+                int count = 0;
+                for (int did = InvertedIndexAccessor.nextGEQ(0, termList, indexFile); did != -1;
+                     did = InvertedIndexAccessor.nextGEQ(did + 1, termList, indexFile)) {
+                    double score = InvertedIndexAccessor.calculateTermImpactScore(termList, documents, indexFile, lexicon,
+                            totalDocs, k1, b, averageDocLength, did);
+                    docIds[count] = did;
+                    impacts[count] = ImpactListWriter.quantize(score, maxScore);
+                    count++;
+                }
+                lexicon.setImpactOffset(listWriter.writeList(docIds, impacts, count));
+                impactLexicon.add(entry.getKey(), lexicon);
+            }
+            impactLexicon.finish();
+        } catch (IOException | RuntimeException e) {
+            // The impact index was truncated when it was opened, so the old one is gone too
+            Files.deleteIfExists(Paths.get(impactIndexPath));
+            throw e;
+        }
+    }
+
+    public static void main(String[] args) {
+        String invertedIndexFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/inverted_index.bin";
+        String lexiconFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/lexicon.bin";
+        String documentTableFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_table.bin";
+        String impactIndexFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/impact_index.bin";
+
+        long startTime = System.currentTimeMillis();
+
+        // Same BM25 parameters as the SearchEngine
+        try {
+            createImpactIndex(invertedIndexFilePath, lexiconFilePath, documentTableFilePath, impactIndexFilePath, 1.5, 0.75);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        System.out.println("Building impact-ordered index completed in: " + Util.formatTime(System.currentTimeMillis() - startTime));
+    }
+}
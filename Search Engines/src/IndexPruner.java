@@ -0,0 +1,391 @@
+import io.DocumentTable;
+import io.ImpactListWriter;
+import io.IndexRunReader;
+import io.InvertedIndexAccessor;
+import io.LexiconFileHandler;
+import io.RunReader;
+import io.Util;
+import model.DocumentScore;
+import model.Lexicon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.*;
+
+/**
+ * Prunes an index statically: drops the postings least likely to reach a top-k and writes the rest as a smaller index
+ * in the same format, which the SearchEngine loads in place of the full one.
+ * Term-centric pruning keeps the highest-scoring postings of every term; document-centric pruning keeps the
+ * highest-scoring terms of every document. Either way every term keeps at least its highest-scoring posting, so no
+ * term of the full index is missing from the pruned lexicon, and terms keep the document frequencies of the full
+ * index, so a kept posting scores as it does in the full index.
+ */
+public class IndexPruner {
+    // BM25 parameters postings are ranked with, the same as the SearchEngine's
+    private static final double K1 = 1.5;
+    private static final double B = 0.75;
+    // Score ranges of the per-document histograms of document-centric pruning, two bytes per range and document
+    private static final int HISTOGRAM_BUCKETS = 32;
+
+    /**
+     * Keeps the postingsPerTerm highest-scoring postings of every term.
+     * @param indexFilePath Path of the full inverted index file.
+     * @param lexiconPath Path of the full lexicon file.
+     * @param documentTablePath Path of the document table.
+     * @param prunedIndexPath Path of the pruned inverted index file.
+     * @param prunedLexiconPath Path of the pruned lexicon file.
+     * @param postingsPerTerm Number of postings kept of every term, at least 1.
+     */
+    public static void pruneByTerm(String indexFilePath, String lexiconPath, String documentTablePath,
+                                   String prunedIndexPath, String prunedLexiconPath, int postingsPerTerm) {
+        if (postingsPerTerm <= 0) {
+            throw new IllegalArgumentException("Postings kept per term must be at least 1: " + postingsPerTerm);
+        }
+        prune(indexFilePath, lexiconPath, documentTablePath, prunedIndexPath, prunedLexiconPath, postingsPerTerm, 0);
+    }
+
+    /**
+     * Keeps the keptFraction highest-scoring terms of every document.
+     * Scores are ranked by ranges of a per-document histogram, so a document keeps all of its terms in the range the
+     * fraction ends in, and slightly more than the fraction overall.
+     * @param indexFilePath Path of the full inverted index file.
+     * @param lexiconPath Path of the full lexicon file.
+     * @param documentTablePath Path of the document table.
+     * @param prunedIndexPath Path of the pruned inverted index file.
+     * @param prunedLexiconPath Path of the pruned lexicon file.
+     * @param keptFraction Fraction of the terms of every document that is kept, in (0, 1].
+     */
+    public static void pruneByDocument(String indexFilePath, String lexiconPath, String documentTablePath,
+                                       String prunedIndexPath, String prunedLexiconPath, double keptFraction) {
+        if (!(keptFraction > 0 && keptFraction <= 1)) {
+            throw new IllegalArgumentException("Kept fraction must be in (0, 1]: " + keptFraction);
+        }
+        prune(indexFilePath, lexiconPath, documentTablePath, prunedIndexPath, prunedLexiconPath, 0, keptFraction);
+    }
+
+    private static void prune(String indexFilePath, String lexiconPath, String documentTablePath, String prunedIndexPath,
+                              String prunedLexiconPath, int postingsPerTerm, double keptFraction) {
+        Map<String, Lexicon> lexiconMap = LexiconFileHandler.readLexicon(lexiconPath);
+        try {
+            DocumentTable documents = DocumentTable.open(documentTablePath);
+            double maxScore = getMaxScore(lexiconMap, documents.getDocumentCount());
+            byte[] thresholds = null;
+            if (postingsPerTerm == 0) {
+                // A first pass over the index finds the score range each document's kept terms start at
+                try (IndexRunReader source = new IndexRunReader(indexFilePath, lexiconMap)) {
+                    thresholds = getDocumentThresholds(source, documents, maxScore, keptFraction);
+                }
+            }
+            try (IndexRunReader source = new IndexRunReader(indexFilePath, lexiconMap)) {
+                PrunedRunReader prunedReader = new PrunedRunReader(source, documents, maxScore, postingsPerTerm, thresholds);
+                InvertedIndexBuilder.createPrunedIndex(prunedReader, lexiconMap, prunedIndexPath, prunedLexiconPath, documentTablePath);
+                System.out.printf("Kept %d of %d postings (%.2f%%), index %s of %s%n", prunedReader.keptCount, prunedReader.readCount,
+                        100.0 * prunedReader.keptCount / Math.max(prunedReader.readCount, 1),
+                        Util.formatSize(new File(prunedIndexPath).length()), Util.formatSize(new File(indexFilePath).length()));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // No posting scores more than the largest idf times (k1 + 1), the limit of the frequency factor
+    private static double getMaxScore(Map<String, Lexicon> lexiconMap, int totalDocs) {
+        int minDocFrequency = Integer.MAX_VALUE;
+        for (Lexicon lexicon : lexiconMap.values()) {
+            minDocFrequency = Math.min(minDocFrequency, lexicon.getDocumentFrequency());
+        }
+        return Math.log((totalDocs - minDocFrequency + 0.5) / (minDocFrequency + 0.5)) * (K1 + 1);
+    }
+
+    // Histogram range of a score; scores that are not positive all fall in the lowest range
+    private static int getBucket(double score, double maxScore) {
+        return ImpactListWriter.quantize(score, maxScore) * HISTOGRAM_BUCKETS / (ImpactListWriter.MAX_IMPACT + 1);
+    }
+
+    private static double getScore(RunReader source, Lexicon lexicon, DocumentTable documents) {
+        return InvertedIndexAccessor.getScore(source.getTermFreq(), documents, lexicon, documents.getDocumentCount(), K1, B,
+                documents.getAverageTermCount(), source.getDocId());
+    }
+
+    // Counts the scores of every document's postings by range, and returns the lowest range each document keeps
+    private static byte[] getDocumentThresholds(IndexRunReader source, DocumentTable documents, double maxScore,
+                                                double keptFraction) throws IOException {
+        int documentCount = documents.getDocumentCount();
+        char[] histograms = new char[documentCount * HISTOGRAM_BUCKETS];
+        while (source.next()) {
+            int slot = source.getDocId() * HISTOGRAM_BUCKETS + getBucket(getScore(source, source.getLexicon(), documents), maxScore);
+            if (histograms[slot] < Character.MAX_VALUE) {
+                histograms[slot]++;
+            }
+        }
+
+        byte[] thresholds = new byte[documentCount];
+        for (int docId = 0; docId < documentCount; docId++) {
+            int start = docId * HISTOGRAM_BUCKETS;
+            int termCount = 0;
+            for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) {
+                termCount += histograms[start + bucket];
+            }
+            long keptCount = (long) Math.ceil(keptFraction * termCount);
+            int bucket = HISTOGRAM_BUCKETS - 1;
+            for (long counted = histograms[start + bucket]; counted < keptCount; counted += histograms[start + bucket]) {
+                bucket--;
+            }
+            thresholds[docId] = (byte) bucket;
+        }
+        return thresholds;
+    }
+
+    /**
+     * Passes on the postings of an index that pruning keeps, one term at a time.
+     */
+    private static class PrunedRunReader implements RunReader {
+        private final IndexRunReader source;
+        private final DocumentTable documents;
+        private final double maxScore;
+        private final int postingsPerTerm;
+        private final byte[] thresholds;
+        private boolean hasPending = false;
+
+        // Postings of the current term, and then the kept ones in their first count entries
+        private String term;
+        private int[] docIds = new int[1 << 10];
+        private int[] termFreqs = new int[1 << 10];
+        private double[] scores = new double[1 << 10];
+        private long[] rankKeys = new long[1 << 10];
+        private int count = 0;
+        private int position = -1;
+
+        long readCount = 0;
+        long keptCount = 0;
+
+        /**
+         * @param source Postings of the full index.
+         * @param documents Document table of the index.
+         * @param maxScore Largest score of any posting, the top of the histogram ranges.
+         * @param postingsPerTerm Postings kept of every term, or 0 to prune by document.
+         * @param thresholds Lowest histogram range every document keeps, when pruning by document.
+         */
+        PrunedRunReader(IndexRunReader source, DocumentTable documents, double maxScore, int postingsPerTerm, byte[] thresholds) {
+            this.source = source;
+            this.documents = documents;
+            this.maxScore = maxScore;
+            this.postingsPerTerm = postingsPerTerm;
+            this.thresholds = thresholds;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            while (++position >= count) {
+                if (!loadTerm()) {
+                    return false;
+                }
+                position = -1;
+            }
+            return true;
+        }
+
+        // Reads all postings of the next term and keeps those that pruning selects
+        private boolean loadTerm() throws IOException {
+            if (!hasPending && !source.next()) {
+                return false;
+            }
+            term = source.getTerm();
+            Lexicon lexicon = source.getLexicon();
+            count = 0;
+            do {
+                if (count == docIds.length) {
+                    docIds = Arrays.copyOf(docIds, count * 2);
+                    termFreqs = Arrays.copyOf(termFreqs, count * 2);
+                    scores = Arrays.copyOf(scores, count * 2);
+                    rankKeys = Arrays.copyOf(rankKeys, count * 2);
+                }
+                docIds[count] = source.getDocId();
+                termFreqs[count] = source.getTermFreq();
+                scores[count] = getScore(source, lexicon, documents);
+                count++;
+            } while ((hasPending = source.next()) && term.equals(source.getTerm()));
+            readCount += count;
+
+            if (postingsPerTerm > 0) {
+                keepTopPostings();
+            } else {
+                keepTopTerms();
+            }
+            keptCount += count;
+            return true;
+        }
+
+        // Term-centric: keeps the postingsPerTerm highest scores, in docId order
+        private void keepTopPostings() {
+            if (count <= postingsPerTerm) {
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                rankKeys[i] = ((long) toSortableInt((float) scores[i]) << 32) | i;
+            }
+            Arrays.sort(rankKeys, 0, count);
+            int[] kept = new int[postingsPerTerm];
+            for (int i = 0; i < postingsPerTerm; i++) {
+                kept[i] = (int) rankKeys[count - 1 - i];
+            }
+            Arrays.sort(kept);
+            for (int i = 0; i < postingsPerTerm; i++) {
+                docIds[i] = docIds[kept[i]];
+                termFreqs[i] = termFreqs[kept[i]];
+            }
+            count = postingsPerTerm;
+        }
+
+        // Document-centric: keeps the postings whose score reaches their document's threshold, or else the best one
+        private void keepTopTerms() {
+            int best = 0;
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (scores[i] > scores[best]) {
+                    best = i;
+                }
+                if (getBucket(scores[i], maxScore) >= thresholds[docIds[i]]) {
+                    docIds[kept] = docIds[i];
+                    termFreqs[kept] = termFreqs[i];
+                    kept++;
+                }
+            }
+            if (kept == 0) {
+                docIds[0] = docIds[best];
+                termFreqs[0] = termFreqs[best];
+                kept = 1;
+            }
+            count = kept;
+        }
+
+        // Maps a float to an int with the same order, negative values included
+        private static int toSortableInt(float value) {
+            int bits = Float.floatToIntBits(value);
+            return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+        }
+
+        @Override
+        public String getTerm() {
+            return term;
+        }
+
+        @Override
+        public int getDocId() {
+            return docIds[position];
+        }
+
+        @Override
+        public int getTermFreq() {
+            return termFreqs[position];
+        }
+
+        @Override
+        public int[] getPositions() {
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+
+    /**
+     * Runs the queries of a file, one per line, against the full and the pruned index, and reports the mean fraction
+     * of the full index's top results that the pruned index also returns. Queries with a term that is not in the
+     * full index are skipped.
+     * @param queryFilePath Path of the query file, terms separated by a space.
+     * @param indexFilePath Path of the full inverted index file.
+     * @param lexiconPath Path of the full lexicon file.
+     * @param prunedIndexPath Path of the pruned inverted index file.
+     * @param prunedLexiconPath Path of the pruned lexicon file.
+     * @param documentTablePath Path of the document table.
+     * @param resultSize Number of top results compared.
+     */
+    public static void reportOverlap(String queryFilePath, String indexFilePath, String lexiconPath, String prunedIndexPath,
+                                     String prunedLexiconPath, String documentTablePath, int resultSize) {
+        Map<String, Lexicon> lexiconMap = LexiconFileHandler.readLexicon(lexiconPath);
+        Map<String, Lexicon> prunedLexiconMap = LexiconFileHandler.readLexicon(prunedLexiconPath);
+        try (BufferedReader queries = new BufferedReader(new FileReader(queryFilePath));
+             RandomAccessFile indexFile = new RandomAccessFile(indexFilePath, "r");
+             RandomAccessFile prunedIndexFile = new RandomAccessFile(prunedIndexPath, "r")) {
+            DocumentTable documents = DocumentTable.open(documentTablePath);
+            int docCount = documents.getDocumentCount();
+            double avgDocLen = documents.getAverageTermCount();
+
+            int queryCount = 0;
+            double overlapSum = 0;
+            long fullTime = 0, prunedTime = 0;
+            String query;
+            while ((query = queries.readLine()) != null) {
+                query = query.trim();
+                if (query.isEmpty() || !lexiconMap.keySet().containsAll(Arrays.asList(query.split(" ")))) {
+                    continue;
+                }
+                long startTime = System.nanoTime();
+                PriorityQueue<DocumentScore> fullResults = QueryProcessor.processMaxScoreQuery(query, lexiconMap, indexFile,
+                        documents, docCount, avgDocLen, K1, B, resultSize);
+                long midTime = System.nanoTime();
+                PriorityQueue<DocumentScore> prunedResults = QueryProcessor.processMaxScoreQuery(query, prunedLexiconMap, prunedIndexFile,
+                        documents, docCount, avgDocLen, K1, B, resultSize);
+                fullTime += midTime - startTime;
+                prunedTime += System.nanoTime() - midTime;
+                if (fullResults.isEmpty()) {
+                    continue;
+                }
+
+                Set<Integer> fullDocIds = new HashSet<>();
+                for (DocumentScore result : fullResults) {
+                    fullDocIds.add(result.getDocId());
+                }
+                int shared = 0;
+                for (DocumentScore result : prunedResults) {
+                    if (fullDocIds.contains(result.getDocId())) {
+                        shared++;
+                    }
+                }
+                overlapSum += (double) shared / fullDocIds.size();
+                queryCount++;
+            }
+
+            System.out.printf("Top-%d overlap with the full index: %.2f%% over %d queries%n", resultSize,
+                    100.0 * overlapSum / Math.max(queryCount, 1), queryCount);
+            System.out.printf("Query time, full index: %d ms, pruned index: %d ms%n", fullTime / 1_000_000, prunedTime / 1_000_000);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // IndexPruner term <postings per term> | IndexPruner document <kept fraction>
+    public static void main(String[] args) {
+        String invertedIndexFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/inverted_index.bin";
+        String lexiconFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/lexicon.bin";
+        String documentTableFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_table.bin";
+        String prunedIndexFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/pruned_inverted_index.bin";
+        String prunedLexiconFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/pruned_lexicon.bin";
+        String queryFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/queries.txt";
+
+        long startTime = System.currentTimeMillis();
+
+        if (args.length > 1 && args[0].equals("document")) {
+            pruneByDocument(invertedIndexFilePath, lexiconFilePath, documentTableFilePath, prunedIndexFilePath, prunedLexiconFilePath,
+                    Double.parseDouble(args[1]));
+        } else {
+            int postingsPerTerm = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+            pruneByTerm(invertedIndexFilePath, lexiconFilePath, documentTableFilePath, prunedIndexFilePath, prunedLexiconFilePath,
+                    postingsPerTerm);
+        }
+
+        System.out.println("Pruning completed in: " + Util.formatTime(System.currentTimeMillis() - startTime));
+
+        // Quality of the pruned index, measured on a query log when there is one
+        if (new File(queryFilePath).exists()) {
+            reportOverlap(queryFilePath, invertedIndexFilePath, lexiconFilePath, prunedIndexFilePath, prunedLexiconFilePath,
+                    documentTableFilePath, 10);
+        }
+    }
+}
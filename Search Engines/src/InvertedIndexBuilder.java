@@ -1,148 +1,440 @@
-import compression.MetadataCompressor;
-import io.LexiconFileHandler;
+import io.BinaryRunReader;
+import io.DocumentTable;
+import io.IndexWriter;
+import io.LexiconWriter;
+import io.MappedLexicon;
+import io.PositionListWriter;
+import io.PostingListWriter;
+import io.PostingPipe;
+import io.RunIndex;
+import io.RunReader;
+import io.SortedFileMerger;
 import io.Util;
 import model.Lexicon;
 import model.Posting;
-import compression.PostingBlockCompressor;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 public class InvertedIndexBuilder {
-    private static final int MAX_BLOCK_SIZE = 128;
-    private static Map<String, Lexicon> termLexicon = new HashMap<>();
-    public static Map<String, Lexicon> getTermLexicon() {
-        return termLexicon;
+    private static final int MAX_BLOCK_SIZE = PostingListWriter.BLOCK_SIZE;
+    // Lists of at most this many postings are kept in their lexicon entries instead of the index file
+    private static final int MAX_INLINE_POSTINGS = 8;
+    // Postings per batch and batches queued between the merger and the builder
+    private static final int PIPE_BATCH_SIZE = 1 << 14;
+    private static final int PIPE_QUEUE_DEPTH = 8;
+    // BM25 parameters of the maximum scores stored in the index, the same as the SearchEngine's
+    private static final double K1 = 1.5;
+    private static final double B = 0.75;
+
+    /**
+     * Merges the temporary files of the parser and builds the index in one stage, without writing the merged postings.
+     * The merge runs on its own thread and hands its postings to the builder through a bounded {@link PostingPipe},
+     * so merging and compression overlap.
+     * @param tempDirectoryPath Path to the directory containing temporary files.
+     * @param indexFilePath Path of the inverted index file.
+     * @param lexiconPath Path of the lexicon file.
+     * @param documentTablePath Path of the document table, for the document lengths of the maximum scores.
+     * @param positionsFilePath Path of the positions file, or null to build the index without positions.
+     * @param maxFanIn Maximum number of runs merged by one merge.
+     * @param threadCount Number of merges that run at the same time while the runs are reduced to maxFanIn.
+     * @throws IOException If the merge or the build fails; no index, lexicon or positions file is left behind.
+     */
+    public static void mergeAndCreateCompressedIndex(String tempDirectoryPath, String indexFilePath, String lexiconPath,
+                                                     String documentTablePath, String positionsFilePath, int maxFanIn,
+                                                     int threadCount) throws IOException {
+        PostingPipe pipe = new PostingPipe(PIPE_BATCH_SIZE, PIPE_QUEUE_DEPTH);
+        Thread merger = new Thread(() -> {
+            PostingPipe.Writer writer = pipe.getWriter();
+            try {
+                SortedFileMerger.mergeSortedFiles(tempDirectoryPath, writer, maxFanIn, threadCount,
+                        SortedFileMerger.DEFAULT_READ_BUFFER_BUDGET);
+                writer.close();
+            } catch (IOException | RuntimeException e) {
+                writer.fail(e);
+            }
+        }, "merger");
+        merger.start();
+
+        RunReader runReader = pipe.getReader();
+        try {
+            // A merge failure is rethrown by the reader
+            createCompressedIndex(runReader, indexFilePath, lexiconPath, documentTablePath, positionsFilePath);
+        } finally {
+            // Closing the reader also wakes a merger blocked on a full pipe after a failed build
+            runReader.close();
+        }
+        try {
+            merger.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the merger");
+        }
     }
 
-    private static void createCompressedIndex(String sourceFilePath, String indexFilePath,
-                                              String metadataPath, String lexiconPath) {
-        try (
-                BufferedReader fileReader = new BufferedReader(new FileReader(sourceFilePath));
-                RandomAccessFile indexFile = new RandomAccessFile(indexFilePath, "rw");
-                RandomAccessFile metadataFile = new RandomAccessFile(metadataPath, "rw")
-        ) {
-            String line;
-            List<Posting> currentBlock = new ArrayList<>(MAX_BLOCK_SIZE);
-            String currentTerm = "";
-            int totalDocs = 0;
-            int blockCount = 0;
-
-            /*
-             *  <METADATA>
-             *  lastDocIds
-             *  docIdBlockStarts
-             *  docIdBlockSizes
-             *  termFreqBlockStarts
-             *  termFreqBlockSizes
-             */
-            List<Integer> lastDocIds = new ArrayList<>();
-            List<Long> docIdBlockStarts = new ArrayList<>();
-            List<Integer> docIdBlockSizes = new ArrayList<>();
-            List<Long> termFreqBlockStarts = new ArrayList<>();
-            List<Integer> termFreqBlockSizes = new ArrayList<>();
-
-            // Track the starting position of the inverted list
-            long startOffset = 0;
-
-            while ((line = fileReader.readLine()) != null) {
-                // Extracting Terms
-                if(line.trim().isEmpty()) continue; // Skip empty lines
-                String[] parts = line.split(" ");
-                String term = parts[0];
-                int docId = Integer.parseInt(parts[1]);
-                int termFreq = Integer.parseInt(parts[2]);
-
-                // When a new term is encountered
-                if (!currentTerm.equals(term)) {
-                    // Compress the block if it's not empty
-                    if (!currentBlock.isEmpty()) {
-                        blockCount++;
-                        PostingBlockCompressor.compressPostingBlock(currentBlock, indexFile, lastDocIds, docIdBlockStarts, docIdBlockSizes, termFreqBlockStarts, termFreqBlockSizes);
-                        currentBlock.clear();
-                    }
-                    // Write lexicon entry if the current term is not empty
-                    if (!currentTerm.isEmpty()) {
-                        writeLexiconEntry(currentTerm, totalDocs, blockCount, startOffset, indexFile, metadataFile, lastDocIds, docIdBlockStarts, docIdBlockSizes, termFreqBlockStarts, termFreqBlockSizes);
+    /**
+     * Merges the temporary files of the parser into term ranges and builds the index from the ranges in parallel.
+     * @param tempDirectoryPath Path to the directory containing temporary files.
+     * @param indexFilePath Path of the inverted index file.
+     * @param lexiconPath Path of the lexicon file.
+     * @param documentTablePath Path of the document table, for the document lengths of the maximum scores.
+     * @param positionsFilePath Path of the positions file, or null to build the index without positions.
+     * @param partitionCount Number of term ranges.
+     * @param maxFanIn Maximum number of runs merged by one merge.
+     * @param threadCount Number of merges, and then of ranges being compressed, at the same time.
+     * @throws IOException If the merge or the build fails; no index, lexicon or positions file is left behind.
+     */
+    public static void mergeAndCreateCompressedIndexInParallel(String tempDirectoryPath, String indexFilePath, String lexiconPath,
+                                                               String documentTablePath, String positionsFilePath,
+                                                               int partitionCount, int maxFanIn, int threadCount) throws IOException {
+        // Not ending in .run, so the partitions are never taken for temporary files of the parser
+        String partitionPath = Paths.get(tempDirectoryPath, "partition.merge").toString();
+        List<String> partitionPaths = SortedFileMerger.mergeSortedFilesByTermRange(tempDirectoryPath, partitionPath, partitionCount,
+                maxFanIn, threadCount, SortedFileMerger.DEFAULT_READ_BUFFER_BUDGET);
+        try {
+            createCompressedIndexInParallel(partitionPaths, indexFilePath, lexiconPath, documentTablePath, positionsFilePath,
+                    threadCount);
+        } finally {
+            // The partitions are only needed by the build, whether or not it succeeded
+            for (String path : partitionPaths) {
+                Files.deleteIfExists(Paths.get(path));
+                Files.deleteIfExists(Paths.get(RunIndex.indexPath(path)));
+            }
+        }
+    }
+
+    /**
+     * Builds the index from the partitions of a term-range merge, compressing the partitions concurrently.
+     * Every partition is compressed into its own index and lexicon shards next to the final files. The shards are then
+     * appended to the final files in term order: inverted lists only hold offsets relative to their own start, so index
+     * shards are copied as they are, while lexicon entries are streamed from their shard and rebased onto the position
+     * of their index shard. Positions shards are appended to the positions file the same way.
+     * The files are the same as those of the sequential build.
+     * @param partitionPaths Paths of the partitions, in term order.
+     * @param indexFilePath Path of the inverted index file.
+     * @param lexiconPath Path of the lexicon file.
+     * @param documentTablePath Path of the document table, for the document lengths of the maximum scores.
+     * @param positionsFilePath Path of the positions file, or null to build the index without positions.
+     * @param threadCount Number of partitions compressed at the same time.
+     * @throws IOException If compressing a partition or appending a shard fails; no index, lexicon, positions or shard
+     *                     file is left behind.
+     */
+    public static void createCompressedIndexInParallel(List<String> partitionPaths, String indexFilePath, String lexiconPath,
+                                                       String documentTablePath, String positionsFilePath,
+                                                       int threadCount) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threadCount, 1));
+        try (LexiconWriter lexicon = new LexiconWriter(lexiconPath)) {
+            DocumentTable documents = DocumentTable.open(documentTablePath);
+            List<Future<String>> shards = new ArrayList<>(partitionPaths.size());
+            for (int shard = 0; shard < partitionPaths.size(); shard++) {
+                String partitionPath = partitionPaths.get(shard);
+                String shardIndexPath = getShardPath(indexFilePath, shard);
+                String shardLexiconPath = getShardPath(lexiconPath, shard);
+                String shardPositionsPath = positionsFilePath == null ? null : getShardPath(positionsFilePath, shard);
+                shards.add(executor.submit(() -> {
+                    try (RunReader runReader = new BinaryRunReader(partitionPath);
+                         IndexWriter indexFile = new IndexWriter(shardIndexPath);
+                         IndexWriter positionsFile = shardPositionsPath == null ? null : new IndexWriter(shardPositionsPath);
+                         LexiconWriter shardLexicon = new LexiconWriter(shardLexiconPath)) {
+                        compressPostings(runReader, indexFile, positionsFile, documents, shardLexicon, null);
+                        shardLexicon.finish();
                     }
-                    // Reset the current term and document counters
-                    currentTerm = term;
-                    totalDocs = 0;
-                    blockCount = 0;
-
-                    // Clear metadata lists
-                    lastDocIds.clear();
-                    docIdBlockStarts.clear();
-                    docIdBlockSizes.clear();
-                    termFreqBlockStarts.clear();
-                    termFreqBlockSizes.clear();
-
-                    // Update start offset for the new term
-                    startOffset = indexFile.getFilePointer();
+                    return shardLexiconPath;
+                }));
+            }
+
+            // Shards are appended as they complete, in order, while later ones are still being compressed
+            try (FileChannel indexFile = FileChannel.open(Paths.get(indexFilePath),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 FileChannel positionsFile = positionsFilePath == null ? null : FileChannel.open(Paths.get(positionsFilePath),
+                         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (int shard = 0; shard < shards.size(); shard++) {
+                    appendShard(awaitShard(shards.get(shard)), lexicon, getShardPath(indexFilePath, shard), indexFile,
+                            positionsFile == null ? null : getShardPath(positionsFilePath, shard), positionsFile);
                 }
+            }
+
+            lexicon.finish();
+        } catch (IOException | RuntimeException e) {
+            stopShards(executor);
+            deleteOutput(indexFilePath, lexiconPath, positionsFilePath);
+            for (int shard = 0; shard < partitionPaths.size(); shard++) {
+                deleteOutput(getShardPath(indexFilePath, shard), getShardPath(lexiconPath, shard),
+                        positionsFilePath == null ? null : getShardPath(positionsFilePath, shard));
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                // Add the posting to the current block
-                currentBlock.add(new Posting(term, docId, termFreq));
-                totalDocs++;
+    // inverted_index.bin -> inverted_index.bin.shard0
+    private static String getShardPath(String filePath, int shard) {
+        return filePath + ".shard" + shard;
+    }
 
-                // If the block is full, compress it
-                if (currentBlock.size() == MAX_BLOCK_SIZE) {
-                    blockCount++;
-                    PostingBlockCompressor.compressPostingBlock(currentBlock, indexFile, lastDocIds, docIdBlockStarts, docIdBlockSizes, termFreqBlockStarts, termFreqBlockSizes);
-                    currentBlock.clear();
-                }
+    // Waits for a shard to be compressed and returns the path of its lexicon, rethrowing the failure of its compression
+    private static String awaitShard(Future<String> shard) throws IOException {
+        try {
+            return shard.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing the shards");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
             }
+            throw new IOException("Compressing a shard failed", e.getCause());
+        }
+    }
+
+    // Stops the shards still being compressed and waits for them, so no shard file is written once it has been deleted
+    private static void stopShards(ExecutorService executor) {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            // Compress the last block
-            if (!currentBlock.isEmpty()) {
-                blockCount++;
-                PostingBlockCompressor.compressPostingBlock(currentBlock, indexFile, lastDocIds, docIdBlockStarts, docIdBlockSizes, termFreqBlockStarts, termFreqBlockSizes);
+    // Appends a shard to the final files, adding the shard's positions to its lexicon entries, and deletes the shard
+    private static void appendShard(String shardLexiconPath, LexiconWriter lexicon, String shardIndexPath, FileChannel indexFile,
+                                    String shardPositionsPath, FileChannel positionsFile) throws IOException {
+        long indexBase = indexFile.position();
+        transferShard(shardIndexPath, indexFile);
+        long positionsBase = 0;
+        if (positionsFile != null) {
+            positionsBase = positionsFile.position();
+            transferShard(shardPositionsPath, positionsFile);
+        }
+        for (Map.Entry<String, Lexicon> entry : MappedLexicon.open(shardLexiconPath).entrySet()) {
+            Lexicon shardEntry = entry.getValue();
+            Lexicon lexiconEntry;
+            if (shardEntry.isInline()) {
+                // An inline list has no place in the index file to move
+                lexiconEntry = shardEntry;
+            } else {
+                lexiconEntry = new Lexicon(shardEntry.getStartOffset() + indexBase, shardEntry.getEndOffset() + indexBase,
+                        shardEntry.getBlockCount(), shardEntry.getDocumentFrequency(), shardEntry.getMaxScore());
+            }
+            if (positionsFile != null) {
+                lexiconEntry.setPositionsOffset(shardEntry.getPositionsOffset() + positionsBase);
             }
+            lexicon.add(entry.getKey(), lexiconEntry);
+        }
+        Files.delete(Paths.get(shardLexiconPath));
+    }
 
-            // Write the last lexicon entry
-            writeLexiconEntry(currentTerm, totalDocs, blockCount, startOffset, indexFile, metadataFile, lastDocIds, docIdBlockStarts, docIdBlockSizes, termFreqBlockStarts, termFreqBlockSizes);
+    // Copies a shard to the end of a final file and deletes the shard
+    private static void transferShard(String shardPath, FileChannel file) throws IOException {
+        try (FileChannel shardFile = FileChannel.open(Paths.get(shardPath), StandardOpenOption.READ)) {
+            long size = shardFile.size();
+            for (long copied = 0; copied < size; ) {
+                copied += shardFile.transferTo(copied, size - copied, file);
+            }
+        }
+        Files.delete(Paths.get(shardPath));
+    }
 
-            // Write the term lexicon to a file
-            LexiconFileHandler.writeLexicon(termLexicon, lexiconPath);
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Builds the index from the postings of a reader, such as a {@link io.ConcatenatedRunReader} over the
+     * partitions of a term-range merge. The reader is not closed.
+     * @param runReader Postings sorted by term and then by document ID.
+     * @param indexFilePath Path of the inverted index file.
+     * @param lexiconPath Path of the lexicon file.
+     * @param documentTablePath Path of the document table, for the document lengths of the maximum scores.
+     * @param positionsFilePath Path of the positions file, or null to build the index without positions.
+     * @throws IOException If the build fails; no index, lexicon or positions file is left behind.
+     */
+    public static void createCompressedIndex(RunReader runReader, String indexFilePath, String lexiconPath,
+                                             String documentTablePath, String positionsFilePath) throws IOException {
+        try (LexiconWriter lexicon = new LexiconWriter(lexiconPath);
+             IndexWriter indexFile = new IndexWriter(indexFilePath);
+             IndexWriter positionsFile = positionsFilePath == null ? null : new IndexWriter(positionsFilePath)) {
+            compressPostings(runReader, indexFile, positionsFile, DocumentTable.open(documentTablePath), lexicon, null);
+            lexicon.finish();
+        } catch (IOException | RuntimeException e) {
+            deleteOutput(indexFilePath, lexiconPath, positionsFilePath);
+            throw e;
         }
     }
 
-    /*
-     *  <LEXICON>
-     *  startOffset
-     *  endOffset
-     *  blockCount
-     *  documentFrequency
-     *  metadataPosition
+    /**
+     * Builds a pruned index from the postings kept from a full index, such as those of a pruned {@link io.IndexRunReader}.
+     * Terms keep the document frequencies of the full index, so the postings of the pruned index score as they do in
+     * the full index. The reader is not closed.
+     * @param runReader Postings kept from the full index, sorted by term and then by document ID.
+     * @param fullLexicon Lexicon of the full index.
+     * @param indexFilePath Path of the pruned inverted index file.
+     * @param lexiconPath Path of the pruned lexicon file.
+     * @param documentTablePath Path of the document table of the full index.
+     * @throws IOException If the build fails; no pruned index or lexicon file is left behind.
      */
-    private static void writeLexiconEntry(String term, int totalDocs, int blockCount, long startOffset,
-                                          RandomAccessFile indexFile, RandomAccessFile metadataFile,
-                                          List<Integer> lastDocIds, List<Long> docIdBlockStarts,
-                                          List<Integer> docIdBlockSizes, List<Long> termFreqBlockStarts,
-                                          List<Integer> termFreqBlockSizes) throws IOException {
+    public static void createPrunedIndex(RunReader runReader, Map<String, Lexicon> fullLexicon, String indexFilePath,
+                                         String lexiconPath, String documentTablePath) throws IOException {
+        try (LexiconWriter lexicon = new LexiconWriter(lexiconPath);
+             IndexWriter indexFile = new IndexWriter(indexFilePath)) {
+            compressPostings(runReader, indexFile, null, DocumentTable.open(documentTablePath), lexicon, fullLexicon);
+            lexicon.finish();
+        } catch (IOException | RuntimeException e) {
+            deleteOutput(indexFilePath, lexiconPath, null);
+            throw e;
+        }
+    }
+
+    // Deletes the files of a failed build, so no truncated index is mistaken for a complete one
+    private static void deleteOutput(String indexFilePath, String lexiconPath, String positionsFilePath) throws IOException {
+        Files.deleteIfExists(Paths.get(indexFilePath));
+        Files.deleteIfExists(Paths.get(lexiconPath));
+        if (positionsFilePath != null) {
+            Files.deleteIfExists(Paths.get(positionsFilePath));
+        }
+    }
+
+    // Compresses the inverted list of every term of the reader, and its positions list when positionsFile is not null,
+    // and writes the entries of the terms to the lexicon; document frequencies are taken from fullLexicon when it is not null
+    private static void compressPostings(RunReader runReader, IndexWriter indexFile, IndexWriter positionsFile,
+                                         DocumentTable documents, LexiconWriter lexicon,
+                                         Map<String, Lexicon> fullLexicon) throws IOException {
+        PostingListWriter listWriter = new PostingListWriter(indexFile, documents, K1, B);
+        PositionListWriter positionWriter = positionsFile == null ? null : new PositionListWriter(positionsFile);
+        List<Posting> currentBlock = new ArrayList<>(MAX_BLOCK_SIZE);
+        String currentTerm = "";
+        int totalDocs = 0;
+
+        // Track the starting position of the inverted list
+        long startOffset = 0;
 
-        Lexicon lexiconEntry = new Lexicon(startOffset, indexFile.getFilePointer(), blockCount, totalDocs, metadataFile.getFilePointer());
-        termLexicon.put(term, lexiconEntry);
+        while (runReader.next()) {
+            // Extracting Terms
+            String term = runReader.getTerm();
+            int docId = runReader.getDocId();
+            int termFreq = runReader.getTermFreq();
 
-        // Compress and write metadata
-        MetadataCompressor.compressMetadata(metadataFile, lastDocIds.stream().mapToInt(i -> i).toArray(), docIdBlockStarts.stream().mapToLong(l -> l).toArray(), docIdBlockSizes.stream().mapToInt(i -> i).toArray(), termFreqBlockStarts.stream().mapToLong(l -> l).toArray(), termFreqBlockSizes.stream().mapToInt(i -> i).toArray());
+            // When a new term is encountered
+            if (!currentTerm.equals(term)) {
+                // Write the list with its last block and its lexicon entry if the current term is not empty
+                if (!currentTerm.isEmpty()) {
+                    writeLexiconEntry(lexicon, currentTerm, currentBlock, totalDocs, startOffset, indexFile, listWriter,
+                            positionWriter, fullLexicon);
+                    currentBlock.clear();
+                }
+                // Reset the current term and document counter
+                currentTerm = term;
+                totalDocs = 0;
+
+                // Update start offset for the new term
+                startOffset = indexFile.getFilePointer();
+            }
+
+            // Add the posting to the current block
+            currentBlock.add(new Posting(term, docId, termFreq));
+            totalDocs++;
+            if (positionWriter != null) {
+                int[] positions = runReader.getPositions();
+                if (positions == null) {
+                    throw new IOException("The temporary files hold no positions, parse the documents with positions first");
+                }
+                positionWriter.addPosting(positions, termFreq);
+            }
+
+            // If the block is full, compress it
+            if (currentBlock.size() == MAX_BLOCK_SIZE) {
+                addBlock(currentBlock, listWriter, positionWriter);
+                currentBlock.clear();
+            }
+        }
+
+        // Write the last list and its lexicon entry
+        if (!currentTerm.isEmpty()) {
+            writeLexiconEntry(lexicon, currentTerm, currentBlock, totalDocs, startOffset, indexFile, listWriter,
+                    positionWriter, fullLexicon);
+        }
     }
 
+    // Compresses a block, and the positions of its postings so position blocks stay in step with the list's blocks
+    private static void addBlock(List<Posting> block, PostingListWriter listWriter, PositionListWriter positionWriter) throws IOException {
+        listWriter.addBlock(block);
+        if (positionWriter != null) {
+            positionWriter.finishBlock();
+        }
+    }
+
+    // Finishes the list of a term with the postings of its last block and writes its lexicon entry, laid out as
+    // described in LexiconWriter; a list of no more than MAX_INLINE_POSTINGS is kept in the entry
+    private static void writeLexiconEntry(LexiconWriter lexicon, String term, List<Posting> lastBlock, int totalDocs,
+                                          long startOffset, IndexWriter indexFile, PostingListWriter listWriter,
+                                          PositionListWriter positionWriter, Map<String, Lexicon> fullLexicon) throws IOException {
+        // A pruned list keeps the document frequency of the full index
+        int documentFrequency = fullLexicon == null ? totalDocs : fullLexicon.get(term).getDocumentFrequency();
+
+        Lexicon lexiconEntry;
+        if (listWriter.getBlockCount() == 0 && lastBlock.size() <= MAX_INLINE_POSTINGS) {
+            int[] docIds = new int[lastBlock.size()];
+            int[] termFreqs = new int[lastBlock.size()];
+            for (int i = 0; i < docIds.length; i++) {
+                docIds[i] = lastBlock.get(i).docId;
+                termFreqs[i] = lastBlock.get(i).termFreq;
+            }
+            // Positions are still written to the positions file, as one block
+            if (positionWriter != null) {
+                positionWriter.finishBlock();
+            }
+            lexiconEntry = new Lexicon(0, 0, 1, documentFrequency, listWriter.getMaxScore(lastBlock, documentFrequency));
+            lexiconEntry.setInlinePostings(docIds, termFreqs);
+        } else {
+            if (!lastBlock.isEmpty()) {
+                addBlock(lastBlock, listWriter, positionWriter);
+            }
+            int blockCount = listWriter.getBlockCount();
+            // The list's header goes in front of its blocks, so the list is only written once it is complete
+            float maxScore = listWriter.finishList(documentFrequency);
+            lexiconEntry = new Lexicon(startOffset, indexFile.getFilePointer(), blockCount, documentFrequency, maxScore);
+        }
+        if (positionWriter != null) {
+            lexiconEntry.setPositionsOffset(positionWriter.finishList());
+        }
+        lexicon.add(term, lexiconEntry);
+    }
 
     // 1. DocumentParser
-    // 2. SortedFileMerger
-    // 3. InvertedIndexBuilder
+    // 2. SortedFileMerger + 3. InvertedIndexBuilder, fused so merged.run is never written
     public static void main(String[] args) {
-        String mergedFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/merged.txt";
+        String tempDirectoryPath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/temp/";
         String invertedIndexFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/inverted_index.bin";
-        String metadataFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/metadata.bin";
         String lexiconFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/lexicon.bin";
+        String documentTableFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_table.bin";
+        String positionsFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/positions.bin";
 
         // Start timer
         long startTime = System.currentTimeMillis();
 
-        createCompressedIndex(mergedFilePath, invertedIndexFilePath, metadataFilePath, lexiconFilePath);
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        List<String> options = Arrays.asList(args);
+        // The positions file is built only from temporary files parsed with positions
+        String positions = options.contains("positions") ? positionsFilePath : null;
+        try {
+            if (options.contains("parallel")) {
+                // One term range per core, compressed concurrently
+                mergeAndCreateCompressedIndexInParallel(tempDirectoryPath, invertedIndexFilePath, lexiconFilePath,
+                        documentTableFilePath, positions, threadCount, SortedFileMerger.DEFAULT_MAX_FAN_IN, threadCount);
+            } else {
+                mergeAndCreateCompressedIndex(tempDirectoryPath, invertedIndexFilePath, lexiconFilePath, documentTableFilePath,
+                        positions, SortedFileMerger.DEFAULT_MAX_FAN_IN, threadCount);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
 
         // End timer and calculate elapsed time
         long endTime = System.currentTimeMillis();
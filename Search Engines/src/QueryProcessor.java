@@ -1,6 +1,9 @@
-import io.DocumentSerializer;
+import io.DocumentTable;
 import model.*;
+import io.ImpactIndexAccessor;
+import io.ImpactListWriter;
 import io.InvertedIndexAccessor;
+import io.PositionIndexAccessor;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
@@ -8,11 +11,14 @@ import java.util.*;
 
 
 public class QueryProcessor {
+    // Added to upper bounds before they are compared with the top-k threshold, so that a bound summed in another order
+    // than the document's score can never fall below it by rounding
+    private static final double SCORE_SLACK = 1e-9;
 
     // Method for processing 'AND' type queries
     public static PriorityQueue<DocumentScore> processAndQuery(String query, Map<String, Lexicon> lexiconMap,
-                                                               RandomAccessFile metadataFile, RandomAccessFile indexFile,
-                                                               List<Document> documents, int totalDocuments,
+                                                               RandomAccessFile indexFile,
+                                                               DocumentTable documents, int totalDocuments,
                                                                double averageDocumentLength, double k1, double b, int resultSize) throws IOException {
         // A priority queue to hold the top results with a comparator that orders by score.
         PriorityQueue<DocumentScore> topResults = new PriorityQueue<>(Comparator.comparingDouble(DocumentScore::getScore));
@@ -29,18 +35,22 @@ public class QueryProcessor {
                 return topResults;
             }
             // Add the list corresponding to the term to the 'lists'
-            lists.add(InvertedIndexAccessor.openList(term, lexiconMap, metadataFile));
+            lists.add(InvertedIndexAccessor.openList(term, lexiconMap, indexFile, documents));
         }
         // Sort the lists by their document frequency to optimize the merging process
-        lists.sort(Comparator.comparingInt(a -> lexiconMap.get(a.getTerm()).getDocumentFrequency()));
+        lists.sort(Comparator.comparingInt(a -> a.getLexicon().getDocumentFrequency()));
 
         // Determine the maximum document ID to bound the search
-        int maxDocID = lists.get(0).getMetadata().lastDocIds[lists.get(0).getMetadata().lastDocIds.length-1];
+        int maxDocID = lists.get(0).getMaxDocId();
         int did = 0, d = 0;
         // Iterate through the documents
-        while (did < maxDocID) {
+        while (did <= maxDocID) {
             // Find the next document that contains the first term
             did = InvertedIndexAccessor.nextGEQ(did, lists.get(0), indexFile);
+            if (did == -1) {
+                // The last documents of the first list were deleted
+                break;
+            }
             // Check if the document contains all other terms
             for (int i = 1; i < termLength && (d = InvertedIndexAccessor.nextGEQ(did, lists.get(i), indexFile)) == did; i++);
 
@@ -53,7 +63,7 @@ public class QueryProcessor {
                 // Calculate the total score for this document
                 double score = 0d;
                 for (int i = 0; i < termLength; i++) {
-                    score += InvertedIndexAccessor.calculateTermImpactScore(lists.get(i), documents, indexFile, lexiconMap.get(lists.get(i).getTerm()), totalDocuments, k1, b, averageDocumentLength, did);
+                    score += InvertedIndexAccessor.calculateTermImpactScore(lists.get(i), documents, indexFile, lists.get(i).getLexicon(), totalDocuments, k1, b, averageDocumentLength, did);
                 }
                 // Add the document to the top results if it is among the top scores
                 if (topResults.size() < resultSize) {
@@ -68,10 +78,167 @@ public class QueryProcessor {
         return topResults;
     }
 
+    /**
+     * Processes an exact phrase query: documents where the terms occur next to each other, in query order.
+     * The lists are intersected as for an 'AND' query, rarest first, and positions are decoded only for the documents
+     * that hold every term, starting from the rarest term so the candidate phrase starts are few from the outset.
+     * Matching documents are scored with BM25 as for an 'AND' query.
+     * @param positionsFile The positions file built alongside the index.
+     */
+    public static PriorityQueue<DocumentScore> processPhraseQuery(String query, Map<String, Lexicon> lexiconMap,
+                                                                  RandomAccessFile indexFile, RandomAccessFile positionsFile,
+                                                                  DocumentTable documents, int totalDocuments,
+                                                                  double averageDocumentLength, double k1, double b, int resultSize) throws IOException {
+        PriorityQueue<DocumentScore> topResults = new PriorityQueue<>(Comparator.comparingDouble(DocumentScore::getScore));
+
+        String[] terms = query.split(" ");
+        int termLength = terms.length;
+
+        // One list per word of the phrase, a repeated word getting its own list at its own offset
+        TermIndexList[] lists = new TermIndexList[termLength];
+        PositionList[] positionLists = new PositionList[termLength];
+        Integer[] order = new Integer[termLength];
+        for (int i = 0; i < termLength; i++) {
+            if (!lexiconMap.containsKey(terms[i])) {
+                System.out.println("Term '" + terms[i] + "' not found in lexicon.");
+                return topResults;
+            }
+            lists[i] = InvertedIndexAccessor.openList(terms[i], lexiconMap, indexFile, documents);
+            positionLists[i] = PositionIndexAccessor.openList(terms[i], lexiconMap, positionsFile);
+            order[i] = i;
+        }
+        // Intersect and match positions rarest first
+        Arrays.sort(order, Comparator.comparingInt(i -> lists[i].getLexicon().getDocumentFrequency()));
+
+        int[] starts = new int[16];
+        int[] positions = new int[16];
+        TermIndexList first = lists[order[0]];
+        int maxDocID = first.getMaxDocId();
+        int did = 0, d = 0;
+        while (did <= maxDocID) {
+            did = InvertedIndexAccessor.nextGEQ(did, first, indexFile);
+            if (did == -1) {
+                break;
+            }
+            for (int i = 1; i < termLength && (d = InvertedIndexAccessor.nextGEQ(did, lists[order[i]], indexFile)) == did; i++);
+
+            if (d > did) {
+                did = d;
+            } else if (d == -1) {
+                break;
+            } else {
+                // Phrase starts implied by the rarest word, kept only while every other word is found at its offset from them
+                int offset = order[0];
+                positions = PositionIndexAccessor.getPositions(positionLists[offset], first, indexFile, positionsFile, positions);
+                int startCount = InvertedIndexAccessor.getFreq(first, indexFile);
+                if (starts.length < startCount) {
+                    starts = new int[Math.max(startCount, starts.length * 2)];
+                }
+                for (int i = 0; i < startCount; i++) {
+                    starts[i] = positions[i] - offset;
+                }
+                for (int i = 1; i < termLength && startCount > 0; i++) {
+                    offset = order[i];
+                    positions = PositionIndexAccessor.getPositions(positionLists[offset], lists[offset], indexFile, positionsFile, positions);
+                    startCount = retainStarts(starts, startCount, positions, InvertedIndexAccessor.getFreq(lists[offset], indexFile), offset);
+                }
+
+                if (startCount > 0) {
+                    double score = 0d;
+                    for (int i = 0; i < termLength; i++) {
+                        score += InvertedIndexAccessor.calculateTermImpactScore(lists[i], documents, indexFile, lists[i].getLexicon(), totalDocuments, k1, b, averageDocumentLength, did);
+                    }
+                    if (topResults.size() < resultSize) {
+                        topResults.offer(new DocumentScore(did, score));
+                    } else if (score > Objects.requireNonNull(topResults.peek()).getScore()) {
+                        topResults.poll();
+                        topResults.offer(new DocumentScore(did, score));
+                    }
+                }
+                did++;
+            }
+        }
+        return topResults;
+    }
+
+    // Keeps the phrase starts at which the word at the given offset occurs, merging the two ascending position lists
+    private static int retainStarts(int[] starts, int startCount, int[] positions, int positionCount, int offset) {
+        int kept = 0;
+        for (int i = 0, j = 0; i < startCount && j < positionCount; ) {
+            int target = starts[i] + offset;
+            if (positions[j] < target) {
+                j++;
+            } else {
+                if (positions[j] == target) {
+                    starts[kept++] = starts[i];
+                }
+                i++;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Processes an 'AND' or 'OR' query across the live segments of a segmented index.
+     * Every segment is searched on its own, with the document count, average document length and document
+     * frequencies of the whole index, so a document scores the same whichever segment holds it; the top results
+     * of the segments are then merged, numbered across the index.
+     * Only the exhaustive evaluators are used: the maximum scores stored in a segment hold for its own statistics.
+     * @param queryType "AND" or "OR".
+     */
+    public static PriorityQueue<DocumentScore> processSegmentedQuery(String queryType, String query, SegmentedIndex index,
+                                                                     double k1, double b, int resultSize) throws IOException {
+        PriorityQueue<DocumentScore> topResults = new PriorityQueue<>(Comparator.comparingDouble(DocumentScore::getScore));
+        boolean isConjunctive = queryType.equals("AND");
+        String[] terms = query.split(" ");
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        for (String term : terms) {
+            documentFrequencies.put(term, index.getDocumentFrequency(term));
+        }
+
+        for (SegmentedIndex.Segment segment : index.getSegments()) {
+            // The segment's entries of the query terms, carrying the document frequencies of the whole index
+            Map<String, Lexicon> lexiconMap = new HashMap<>();
+            List<String> segmentTerms = new ArrayList<>();
+            for (String term : terms) {
+                Lexicon lexicon = segment.lexiconMap.get(term);
+                if (lexicon != null) {
+                    Lexicon segmentLexicon = new Lexicon(lexicon.getStartOffset(), lexicon.getEndOffset(), lexicon.getBlockCount(),
+                            documentFrequencies.get(term), lexicon.getMaxScore());
+                    if (lexicon.isInline()) {
+                        segmentLexicon.setInlinePostings(lexicon.getInlineDocIds(), lexicon.getInlineTermFreqs());
+                    }
+                    lexiconMap.put(term, segmentLexicon);
+                    segmentTerms.add(term);
+                }
+            }
+            // No document of the segment matches a conjunction with a term it lacks, and a disjunction of none of its terms
+            if (segmentTerms.isEmpty() || (isConjunctive && segmentTerms.size() < terms.length)) {
+                continue;
+            }
+
+            String segmentQuery = String.join(" ", segmentTerms);
+            PriorityQueue<DocumentScore> segmentResults = isConjunctive
+                    ? processAndQuery(segmentQuery, lexiconMap, segment.indexFile, segment.documents, index.getDocumentCount(),
+                            index.getAverageTermCount(), k1, b, resultSize)
+                    : processOrQuery(segmentQuery, lexiconMap, segment.indexFile, segment.documents, index.getDocumentCount(),
+                            index.getAverageTermCount(), k1, b, resultSize);
+            for (DocumentScore result : segmentResults) {
+                if (topResults.size() < resultSize) {
+                    topResults.offer(new DocumentScore(segment.baseDocId + result.getDocId(), result.getScore()));
+                } else if (result.getScore() > Objects.requireNonNull(topResults.peek()).getScore()) {
+                    topResults.poll();
+                    topResults.offer(new DocumentScore(segment.baseDocId + result.getDocId(), result.getScore()));
+                }
+            }
+        }
+        return topResults;
+    }
+
     // Method for processing 'OR' type queries
     public static PriorityQueue<DocumentScore> processOrQuery(String query, Map<String, Lexicon> lexiconMap,
-                                                              RandomAccessFile metadataFile, RandomAccessFile indexFile,
-                                                              List<Document> documents, int totalDocuments,
+                                                              RandomAccessFile indexFile,
+                                                              DocumentTable documents, int totalDocuments,
                                                               double averageDocumentLength, double k1, double b, int resultSize) throws IOException {
         PriorityQueue<DocumentScore> topResults = new PriorityQueue<>(Comparator.comparingDouble(DocumentScore::getScore));
         String[] terms = query.split(" ");
@@ -83,20 +250,22 @@ public class QueryProcessor {
                 System.out.println("Term '" + term + "' not found in lexicon.");
                 return topResults;
             }
-            lists.add(InvertedIndexAccessor.openList(term, lexiconMap, metadataFile));
+            lists.add(InvertedIndexAccessor.openList(term, lexiconMap, indexFile, documents));
         }
-        lists.sort(Comparator.comparingInt(a -> lexiconMap.get(a.getTerm()).getDocumentFrequency()));
+        lists.sort(Comparator.comparingInt(a -> a.getLexicon().getDocumentFrequency()));
 
         Map<Integer, Double> scoreTable = new HashMap<>();
         for (int i = 0; i < termLength; i++) {
             TermIndexList list = lists.get(i);
-            InvertedIndexAccessor.updateScoreTable(scoreTable, list, indexFile, documents, lexiconMap.get(list.getTerm()), totalDocuments, k1, b, averageDocumentLength);
+            InvertedIndexAccessor.updateScoreTable(scoreTable, list, indexFile, documents, list.getLexicon(), totalDocuments, k1, b, averageDocumentLength);
         }
 
 
-        for (Map.Entry<Integer, Double> entry : scoreTable.entrySet()) {
-            int docId = entry.getKey();
-            double score = entry.getValue();
+        // In docId order, so that a tie for the last place goes to the lower docId, as in document-at-a-time evaluation
+        List<Integer> docIds = new ArrayList<>(scoreTable.keySet());
+        Collections.sort(docIds);
+        for (int docId : docIds) {
+            double score = scoreTable.get(docId);
             if (topResults.size() < resultSize || score > Objects.requireNonNull(topResults.peek()).getScore()) {
                 if (topResults.size() == resultSize) {
                     topResults.poll(); // Remove the lowest scoring document if the queue is full
@@ -106,10 +275,319 @@ public class QueryProcessor {
         }
         return topResults;
     }
+    /**
+     * Processes an 'OR' query document-at-a-time with Block-Max WAND.
+     * The lists are kept sorted by their current docId. The pivot is the first document that could enter the top-k
+     * by the maximum scores of the terms; the block maximum scores of the blocks holding the pivot then decide whether
+     * it is scored or whether every list up to the pivot skips past the end of the first of those blocks.
+     * Documents are scored by adding the scores of their terms in the order processOrQuery does, so the top-k is the same.
+     */
+    public static PriorityQueue<DocumentScore> processBlockMaxWandQuery(String query, Map<String, Lexicon> lexiconMap,
+                                                                        RandomAccessFile indexFile, DocumentTable documents,
+                                                                        int totalDocuments, double averageDocumentLength,
+                                                                        double k1, double b, int resultSize) throws IOException {
+        PriorityQueue<DocumentScore> topResults = new PriorityQueue<>(Comparator.comparingDouble(DocumentScore::getScore));
+        String[] terms = query.split(" ");
+        int termLength = terms.length;
+
+        List<TermIndexList> lists = new ArrayList<>();
+        for (String term : terms) {
+            if (!lexiconMap.containsKey(term)) {
+                System.out.println("Term '" + term + "' not found in lexicon.");
+                return topResults;
+            }
+            lists.add(InvertedIndexAccessor.openList(term, lexiconMap, indexFile, documents));
+        }
+        lists.sort(Comparator.comparingInt(a -> a.getLexicon().getDocumentFrequency()));
+
+        // Current docId of every list, Integer.MAX_VALUE once it is exhausted; negative scores bound nothing
+        int[] docIds = new int[termLength];
+        double[] maxScores = new double[termLength];
+        int[] order = new int[termLength]; // lists by current docId
+        for (int i = 0; i < termLength; i++) {
+            docIds[i] = next(0, lists.get(i), indexFile);
+            maxScores[i] = Math.max(0, lists.get(i).getLexicon().getMaxScore());
+            order[i] = i;
+        }
+
+        while (true) {
+            sortByDocId(order, docIds);
+
+            // Find the pivot, the first list at which the maximum scores add up to a score that could enter the top-k
+            int pivot = -1;
+            double bound = 0;
+            for (int p = 0; p < termLength && docIds[order[p]] != Integer.MAX_VALUE; p++) {
+                bound += maxScores[order[p]];
+                if (canEnter(bound, topResults, resultSize)) {
+                    pivot = p;
+                    break;
+                }
+            }
+            if (pivot == -1) {
+                break; // No document left can enter the top-k
+            }
+            int pivotDoc = docIds[order[pivot]];
+            while (pivot + 1 < termLength && docIds[order[pivot + 1]] == pivotDoc) {
+                pivot++;
+            }
+
+            // Bound the pivot by the maximum scores of the blocks holding it, and find where those blocks end
+            double blockBound = 0;
+            int nextDoc = pivot + 1 < termLength ? docIds[order[pivot + 1]] : Integer.MAX_VALUE;
+            for (int p = 0; p <= pivot; p++) {
+                TermIndexList list = lists.get(order[p]);
+                int block = InvertedIndexAccessor.nextShallow(pivotDoc, list);
+                if (block != -1) {
+                    blockBound += Math.max(0, list.blockMaxScores[block]);
+                    nextDoc = Math.min(nextDoc, list.lastDocIds[block] + 1);
+                }
+            }
+
+            if (canEnter(blockBound, topResults, resultSize)) {
+                if (docIds[order[0]] == pivotDoc) {
+                    // Score the pivot, adding the terms in the order of the lists
+                    double score = 0d;
+                    for (int i = 0; i < termLength; i++) {
+                        if (docIds[i] == pivotDoc) {
+                            score += InvertedIndexAccessor.calculateTermImpactScore(lists.get(i), documents, indexFile,
+                                    lists.get(i).getLexicon(), totalDocuments, k1, b, averageDocumentLength, pivotDoc);
+                            docIds[i] = next(pivotDoc + 1, lists.get(i), indexFile);
+                        }
+                    }
+                    if (topResults.size() < resultSize || score > Objects.requireNonNull(topResults.peek()).getScore()) {
+                        if (topResults.size() == resultSize) {
+                            topResults.poll(); // Remove the lowest scoring document if the queue is full
+                        }
+                        topResults.offer(new DocumentScore(pivotDoc, score));
+                    }
+                } else {
+                    // Bring the lists before the pivot up to it
+                    for (int p = 0; p <= pivot && docIds[order[p]] < pivotDoc; p++) {
+                        docIds[order[p]] = next(pivotDoc, lists.get(order[p]), indexFile);
+                    }
+                }
+            } else {
+                // No document before nextDoc can enter the top-k
+                for (int p = 0; p <= pivot; p++) {
+                    if (docIds[order[p]] < nextDoc) {
+                        docIds[order[p]] = next(nextDoc, lists.get(order[p]), indexFile);
+                    }
+                }
+            }
+        }
+        return topResults;
+    }
+
+    /**
+     * Processes an 'OR' query document-at-a-time with MaxScore.
+     * The lists are ordered by the maximum score of their term. The lists whose maximum scores add up to no more than
+     * the top-k threshold are non-essential: a document found in them alone cannot enter the top-k, so candidates only
+     * come from the other, essential lists. A candidate's score is then completed from the non-essential lists, highest
+     * maximum score first, for only as long as it can still enter the top-k.
+     * Documents are scored by adding the scores of their terms in the order processOrQuery does, so the top-k is the same.
+     */
+    public static PriorityQueue<DocumentScore> processMaxScoreQuery(String query, Map<String, Lexicon> lexiconMap,
+                                                                    RandomAccessFile indexFile, DocumentTable documents,
+                                                                    int totalDocuments, double averageDocumentLength,
+                                                                    double k1, double b, int resultSize) throws IOException {
+        PriorityQueue<DocumentScore> topResults = new PriorityQueue<>(Comparator.comparingDouble(DocumentScore::getScore));
+        String[] terms = query.split(" ");
+        int termLength = terms.length;
+
+        List<TermIndexList> lists = new ArrayList<>();
+        for (String term : terms) {
+            if (!lexiconMap.containsKey(term)) {
+                System.out.println("Term '" + term + "' not found in lexicon.");
+                return topResults;
+            }
+            lists.add(InvertedIndexAccessor.openList(term, lexiconMap, indexFile, documents));
+        }
+        lists.sort(Comparator.comparingInt(a -> a.getLexicon().getDocumentFrequency()));
+
+        // Current docId of every list, Integer.MAX_VALUE once it is exhausted; negative scores bound nothing
+        int[] docIds = new int[termLength];
+        double[] maxScores = new double[termLength];
+        for (int i = 0; i < termLength; i++) {
+            docIds[i] = next(0, lists.get(i), indexFile);
+            maxScores[i] = Math.max(0, lists.get(i).getLexicon().getMaxScore());
+        }
+        // Lists by ascending maximum score, and the sums of the maximum scores up to each of them
+        int[] byMaxScore = new int[termLength];
+        double[] boundSums = new double[termLength];
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < termLength; i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingDouble(i -> maxScores[i]));
+        for (int j = 0; j < termLength; j++) {
+            byMaxScore[j] = order.get(j);
+            boundSums[j] = (j == 0 ? 0 : boundSums[j - 1]) + maxScores[byMaxScore[j]];
+        }
+
+        double[] termScores = new double[termLength];
+        boolean[] isMatched = new boolean[termLength];
+        int firstEssential = 0;
+        while (true) {
+            // The threshold only rises, so lists only ever become non-essential
+            while (firstEssential < termLength && !canEnter(boundSums[firstEssential], topResults, resultSize)) {
+                firstEssential++;
+            }
+            if (firstEssential == termLength) {
+                break; // Not even a document in every list can enter the top-k
+            }
+            int candidate = Integer.MAX_VALUE;
+            for (int j = firstEssential; j < termLength; j++) {
+                candidate = Math.min(candidate, docIds[byMaxScore[j]]);
+            }
+            if (candidate == Integer.MAX_VALUE) {
+                break; // The essential lists are exhausted
+            }
+
+            double partialScore = 0d;
+            for (int j = firstEssential; j < termLength; j++) {
+                int i = byMaxScore[j];
+                if (docIds[i] == candidate) {
+                    termScores[i] = InvertedIndexAccessor.calculateTermImpactScore(lists.get(i), documents, indexFile,
+                            lists.get(i).getLexicon(), totalDocuments, k1, b, averageDocumentLength, candidate);
+                    isMatched[i] = true;
+                    partialScore += termScores[i];
+                    docIds[i] = next(candidate + 1, lists.get(i), indexFile);
+                }
+            }
+            boolean canQualify = true;
+            for (int j = firstEssential - 1; j >= 0; j--) {
+                if (!canEnter(partialScore + boundSums[j], topResults, resultSize)) {
+                    canQualify = false; // Not even the remaining non-essential lists can lift it into the top-k
+                    break;
+                }
+                int i = byMaxScore[j];
+                if (docIds[i] < candidate) {
+                    docIds[i] = next(candidate, lists.get(i), indexFile);
+                }
+                if (docIds[i] == candidate) {
+                    termScores[i] = InvertedIndexAccessor.calculateTermImpactScore(lists.get(i), documents, indexFile,
+                            lists.get(i).getLexicon(), totalDocuments, k1, b, averageDocumentLength, candidate);
+                    isMatched[i] = true;
+                    partialScore += termScores[i];
+                }
+            }
+
+            if (canQualify) {
+                // Add the terms up again in the order of the lists
+                double score = 0d;
+                for (int i = 0; i < termLength; i++) {
+                    if (isMatched[i]) {
+                        score += termScores[i];
+                    }
+                }
+                if (topResults.size() < resultSize || score > Objects.requireNonNull(topResults.peek()).getScore()) {
+                    if (topResults.size() == resultSize) {
+                        topResults.poll(); // Remove the lowest scoring document if the queue is full
+                    }
+                    topResults.offer(new DocumentScore(candidate, score));
+                }
+            }
+            Arrays.fill(isMatched, false);
+        }
+        return topResults;
+    }
+
+    // Moves a list to its next document with docId >= target, returning Integer.MAX_VALUE when there is none
+    private static int next(int target, TermIndexList list, RandomAccessFile indexFile) throws IOException {
+        int docId = InvertedIndexAccessor.nextGEQ(target, list, indexFile);
+        return docId == -1 ? Integer.MAX_VALUE : docId;
+    }
+
+    // Whether a document whose score is at most the bound could still enter the top results
+    private static boolean canEnter(double bound, PriorityQueue<DocumentScore> topResults, int resultSize) {
+        return topResults.size() < resultSize || bound + SCORE_SLACK > Objects.requireNonNull(topResults.peek()).getScore();
+    }
+
+    // Insertion sort of the list indexes by current docId; queries have few terms, and the order changes little between steps
+    private static void sortByDocId(int[] order, int[] docIds) {
+        for (int i = 1; i < order.length; i++) {
+            int list = order[i];
+            int j = i - 1;
+            for (; j >= 0 && docIds[order[j]] > docIds[list]; j--) {
+                order[j + 1] = order[j];
+            }
+            order[j + 1] = list;
+        }
+    }
+
+    /**
+     * Processes an 'OR' query score-at-a-time over the impact-ordered index.
+     * The segments of all query terms are visited by descending impact, adding each segment's impact to the accumulator
+     * of its documents, so the documents most likely to rank high are scored first. No segment is started once
+     * postingBudget postings have been processed, which bounds the work of every query at the cost of a top-k that is
+     * approximate when the budget is reached. Accumulators are 16-bit and saturate.
+     * @param postingBudget Number of postings after which no further segment is started.
+     */
+    public static PriorityQueue<DocumentScore> processScoreAtATimeQuery(String query, Map<String, Lexicon> lexiconMap,
+                                                                        RandomAccessFile impactFile, DocumentTable documents,
+                                                                        long postingBudget, int resultSize) throws IOException {
+        PriorityQueue<DocumentScore> topResults = new PriorityQueue<>(Comparator.comparingDouble(DocumentScore::getScore));
+        String[] terms = query.split(" ");
+
+        List<ImpactSegment> segments = new ArrayList<>();
+        for (String term : terms) {
+            if (!lexiconMap.containsKey(term)) {
+                System.out.println("Term '" + term + "' not found in lexicon.");
+                return topResults;
+            }
+            segments.addAll(ImpactIndexAccessor.openSegments(term, lexiconMap, impactFile));
+        }
+        // Highest impacts first, whichever term they belong to
+        segments.sort(Comparator.comparingInt(ImpactSegment::getImpact).reversed());
+
+        short[] accumulators = new short[documents.getDocumentCount()];
+        int[] touchedDocIds = new int[1 << 10];
+        int touchedCount = 0;
+        int[] docIds = new int[1 << 10];
+        long processed = 0;
+        for (ImpactSegment segment : segments) {
+            if (processed >= postingBudget) {
+                break;
+            }
+            docIds = ImpactIndexAccessor.readSegment(segment, impactFile, docIds);
+            int impact = segment.getImpact();
+            for (int i = 0; i < segment.getPostingCount(); i++) {
+                int docId = docIds[i];
+                int accumulator = accumulators[docId] & 0xFFFF;
+                if (accumulator == 0) {
+                    // Remember the documents scored, so the top-k is taken from them rather than from every accumulator
+                    if (touchedCount == touchedDocIds.length) {
+                        touchedDocIds = Arrays.copyOf(touchedDocIds, touchedCount * 2);
+                    }
+                    touchedDocIds[touchedCount++] = docId;
+                }
+                accumulators[docId] = (short) Math.min(0xFFFF, accumulator + impact);
+            }
+            processed += segment.getPostingCount();
+        }
+
+        double scorePerImpact = ImpactIndexAccessor.readMaxScore(impactFile) / (ImpactListWriter.MAX_IMPACT - 1);
+        for (int i = 0; i < touchedCount; i++) {
+            int docId = touchedDocIds[i];
+            // Deleted documents are accumulated like the others and only dropped here, once per document
+            if (documents.isDeleted(docId)) {
+                continue;
+            }
+            double score = (accumulators[docId] & 0xFFFF) * scorePerImpact;
+            if (topResults.size() < resultSize) {
+                topResults.offer(new DocumentScore(docId, score));
+            } else if (score > Objects.requireNonNull(topResults.peek()).getScore()) {
+                topResults.poll(); // Remove the lowest scoring document
+                topResults.offer(new DocumentScore(docId, score));
+            }
+        }
+        return topResults;
+    }
+
     // Method for processing a single term query
     public static PriorityQueue<DocumentScore> processSingleTermQuery(String term, Map<String, Lexicon> lexiconMap,
-                                                                      RandomAccessFile metadataFile, RandomAccessFile indexFile,
-                                                                      List<Document> documents, int totalDocuments,
+                                                                      RandomAccessFile indexFile,
+                                                                      DocumentTable documents, int totalDocuments,
                                                                       double averageDocumentLength, double k1, double b, int resultSize) throws IOException {
         PriorityQueue<DocumentScore> topResults = new PriorityQueue<>(Comparator.comparingDouble(DocumentScore::getScore));
 
@@ -118,14 +596,13 @@ public class QueryProcessor {
             return topResults;
         }
 
-        TermIndexList termList = InvertedIndexAccessor.openList(term, lexiconMap, metadataFile);
-        Metadata metadata = termList.getMetadata();
-        int maxDocID = metadata.getLastDocIds()[metadata.getLastDocIds().length - 1];
+        TermIndexList termList = InvertedIndexAccessor.openList(term, lexiconMap, indexFile, documents);
+        int maxDocID = termList.getMaxDocId();
 
         for (int did = 0; did <= maxDocID; did = InvertedIndexAccessor.nextGEQ(did, termList, indexFile)) {
             if (did == -1) break; // No more documents
 
-            double score = InvertedIndexAccessor.calculateTermImpactScore(termList, documents, indexFile, lexiconMap.get(term), totalDocuments, k1, b, averageDocumentLength, did);
+            double score = InvertedIndexAccessor.calculateTermImpactScore(termList, documents, indexFile, termList.getLexicon(), totalDocuments, k1, b, averageDocumentLength, did);
 
             // Check if the current document's score qualifies it to be in the top results.
             if (topResults.size() < resultSize) {
@@ -1,5 +1,5 @@
-import io.DocumentSerializer;
-import model.Document;
+import io.DeletedDocuments;
+import io.DocumentTable;
 import model.DocumentScore;
 import model.Lexicon;
 import io.LexiconFileHandler;
@@ -11,34 +11,57 @@ import java.io.RandomAccessFile;
 import java.util.*;
 
 public class SearchEngine {
-    static String documentDataFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_data.ser";
+    static String documentTableFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_table.bin";
     static String invertedIndexFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/inverted_index.bin";
-    static String metadataFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/metadata.bin";
+    static String impactIndexFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/impact_index.bin";
+    static String positionsFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/positions.bin";
     static String lexiconFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/lexicon.bin";
+    static String deletedDocumentsFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/deleted_docs.bin";
+    static String segmentsDirectoryPath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/segments/";
     public static void main(String[] args) {
+        // SearchEngine segments: searches the segmented index built by the SegmentIndexer
+        if (args.length > 0 && args[0].equals("segments")) {
+            searchSegments();
+            return;
+        }
+
         long fileReadStartTime = System.currentTimeMillis(); // Start timing file reading
         System.out.println("Reading files...");
 
 
         // Read lexicon and document information from files
         Map<String, Lexicon> lexiconMap = LexiconFileHandler.readLexicon(lexiconFilePath);
-        List<Document> documents = DocumentSerializer.deserializeDocumentList(documentDataFilePath);
-        RandomAccessFile metadataFile;
+        DocumentTable documents;
         RandomAccessFile indexFile;
-        int docCount = documents.size();
-        double avgDocLen = documents.stream().mapToInt(Document::getTermCount).average().orElse(0.0);
+        RandomAccessFile impactFile = null;
+        RandomAccessFile positionsFile = null;
         double k1 = 1.5;
         double b = 0.75;
         int resultSize = 10;
+        // Postings after which a SAAT query stops starting new segments
+        long postingBudget = 5_000_000L;
 
-        // Open metadata and index files
+        // Map the document table and open the index files
         try {
-            metadataFile = new RandomAccessFile(metadataFilePath, "r");
+            documents = DocumentTable.open(documentTableFilePath);
+            // Documents deleted by the DocumentDeleter since the index was last compacted
+            documents.setDeletedDocuments(DeletedDocuments.read(deletedDocumentsFilePath));
             indexFile = new RandomAccessFile(invertedIndexFilePath, "r");
+            // The impact-ordered index is optional, built by ImpactIndexBuilder
+            if (new File(impactIndexFilePath).exists()) {
+                impactFile = new RandomAccessFile(impactIndexFilePath, "r");
+            }
+            // The positions file is optional, built by InvertedIndexBuilder from temporary files parsed with positions
+            if (new File(positionsFilePath).exists()) {
+                positionsFile = new RandomAccessFile(positionsFilePath, "r");
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
+        int docCount = documents.getDocumentCount();
+        double avgDocLen = documents.getAverageTermCount();
+
         long fileReadEndTime = System.currentTimeMillis(); // End timing file reading
         String fileReadDuration = Util.calculateAndFormatDuration(fileReadStartTime, fileReadEndTime);
         System.out.println("Time taken to read files: " + fileReadDuration);
@@ -50,7 +73,7 @@ public class SearchEngine {
         while (true) {
             System.out.println("=====================================================");
 
-            System.out.print("Enter query type (AND/OR, type 'QUIT' to stop): ");
+            System.out.print("Enter query type (AND/OR/BMW/MAXSCORE/SAAT/PHRASE, type 'QUIT' to stop): ");
             String queryType = scanner.nextLine().trim().toUpperCase();
 
             // Stop the loop if the user types 'ESC'
@@ -68,12 +91,32 @@ public class SearchEngine {
                 switch (queryType) {
 //                    case "SINGLE" -> {
 //                        assert lexiconMap != null;
-//                        results = QueryProcessor.processSingleTermQuery(query, lexiconMap, metadataFile, indexFile, documents, docCount, avgDocLen, k1, b, resultSize);
+//                        results = QueryProcessor.processSingleTermQuery(query, lexiconMap, indexFile, documents, docCount, avgDocLen, k1, b, resultSize);
 //                    }
                     case "AND" ->
-                            results = QueryProcessor.processAndQuery(query, lexiconMap, metadataFile, indexFile, documents, docCount, avgDocLen, k1, b, resultSize);
+                            results = QueryProcessor.processAndQuery(query, lexiconMap, indexFile, documents, docCount, avgDocLen, k1, b, resultSize);
                     case "OR" ->
-                            results = QueryProcessor.processOrQuery(query, lexiconMap, metadataFile, indexFile, documents, docCount, avgDocLen, k1, b, resultSize);
+                            results = QueryProcessor.processOrQuery(query, lexiconMap, indexFile, documents, docCount, avgDocLen, k1, b, resultSize);
+                    case "BMW" ->
+                            results = QueryProcessor.processBlockMaxWandQuery(query, lexiconMap, indexFile, documents, docCount, avgDocLen, k1, b, resultSize);
+                    case "MAXSCORE" ->
+                            results = QueryProcessor.processMaxScoreQuery(query, lexiconMap, indexFile, documents, docCount, avgDocLen, k1, b, resultSize);
+                    case "SAAT" -> {
+                        if (impactFile == null) {
+                            System.out.println("No impact-ordered index at " + impactIndexFilePath);
+                            continue;
+                        }
+                        results = QueryProcessor.processScoreAtATimeQuery(query, lexiconMap, impactFile, documents, postingBudget, resultSize);
+                    }
+                    case "PHRASE" -> {
+                        if (positionsFile == null) {
+                            System.out.println("No positions file at " + positionsFilePath);
+                            continue;
+                        }
+                        // Quotes around the phrase are optional
+                        String phrase = query.replace("\"", "").trim();
+                        results = QueryProcessor.processPhraseQuery(phrase, lexiconMap, indexFile, positionsFile, documents, docCount, avgDocLen, k1, b, resultSize);
+                    }
                     default -> {
                         System.out.println("Invalid query type.");
                         continue;
@@ -88,7 +131,56 @@ public class SearchEngine {
                 while (!results.isEmpty()) {
                     DocumentScore doc = results.poll();
                     // Document Id: " + docId + ", URL: " + url + ", Term Count: " + termCount
-                    System.out.println(documents.get(doc.getDocId()) + ", Score: " + String.format("%.6f", doc.getScore()));
+                    System.out.println(documents.getDocument(doc.getDocId()) + ", Score: " + String.format("%.6f", doc.getScore()));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        System.out.println("Bye!");
+        scanner.close();
+    }
+
+    // Query loop over the live segments of the segmented index, as they were when it started
+    private static void searchSegments() {
+        double k1 = 1.5;
+        double b = 0.75;
+        int resultSize = 10;
+
+        SegmentedIndex index;
+        try {
+            index = SegmentedIndex.open(segmentsDirectoryPath);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        System.out.println("Segments: " + index.getSegments().size() + ", Documents: " + index.getDocumentCount());
+
+        Scanner scanner = new Scanner(System.in);
+        while (true) {
+            System.out.println("=====================================================");
+
+            System.out.print("Enter query type (AND/OR, type 'QUIT' to stop): ");
+            String queryType = scanner.nextLine().trim().toUpperCase();
+            if ("QUIT".equals(queryType)) {
+                break;
+            }
+            if (!queryType.equals("AND") && !queryType.equals("OR")) {
+                System.out.println("Invalid query type.");
+                continue;
+            }
+
+            System.out.print("Enter query (separate by the space) : ");
+            String query = scanner.nextLine();
+
+            try {
+                long startTime = System.currentTimeMillis();
+                PriorityQueue<DocumentScore> results = QueryProcessor.processSegmentedQuery(queryType, query, index, k1, b, resultSize);
+                System.out.println("Query processing time: " + Util.calculateAndFormatDuration(startTime, System.currentTimeMillis()));
+
+                while (!results.isEmpty()) {
+                    DocumentScore doc = results.poll();
+                    System.out.println(index.getDocument(doc.getDocId()) + ", Score: " + String.format("%.6f", doc.getScore()));
                 }
             } catch (IOException e) {
                 e.printStackTrace();
@@ -97,5 +189,10 @@ public class SearchEngine {
 
         System.out.println("Bye!");
         scanner.close();
+        try {
+            index.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
-}
\ No newline at end of file
+}
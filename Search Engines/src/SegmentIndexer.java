@@ -0,0 +1,325 @@
+import io.DeletedDocuments;
+import io.DocIdMappingRunReader;
+import io.DocumentParser;
+import io.DocumentTable;
+import io.IndexRunReader;
+import io.LexiconFileHandler;
+import io.LoserTree;
+import io.RunReader;
+import io.SegmentManifest;
+import io.SortedFileMerger;
+import io.Util;
+import model.Document;
+import model.Lexicon;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Indexes batches of documents into a segmented index, without rebuilding what is already indexed.
+ * Every batch is parsed and built into a new segment with its own inverted index, lexicon and document table, and
+ * becomes searchable once the manifest lists it. Segments are merged in the background by a tiered policy: segments
+ * of similar size form a tier, and SEGMENTS_PER_TIER segments of a tier are merged into one of the next tier, so the
+ * number of segments grows with the logarithm of the number of documents.
+ * Deleted documents are marked in the deleted documents file of their segment, and purged when it is merged.
+ */
+public class SegmentIndexer implements Closeable {
+    public static final String INDEX_FILE = "inverted_index.bin";
+    public static final String LEXICON_FILE = "lexicon.bin";
+    public static final String DOCUMENT_TABLE_FILE = "document_table.bin";
+    // Segments of a tier merged at a time, and the number of documents below which segments are all in the lowest tier
+    private static final int SEGMENTS_PER_TIER = 10;
+    private static final int LOWEST_TIER_SIZE = 10_000;
+
+    private final String indexDirectory;
+    private final int threadCount;
+    private final SegmentManifest manifest;
+    // Merges run one at a time, behind the batches being added
+    private final ExecutorService merger = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "segment-merger"));
+    // Held by deletions, and by merges only while they read the deleted documents of the segments they merge and while
+    // they replace those segments, so a deletion made during a merge is carried over to the merged segment
+    private final Object deletionLock = new Object();
+
+    /**
+     * Opens a segmented index for adding documents, creating it if the directory holds none.
+     * @param indexDirectory Directory of the segmented index.
+     * @param threadCount Number of threads parsing and merging the runs of a batch.
+     * @throws IOException If the manifest cannot be read.
+     */
+    public SegmentIndexer(String indexDirectory, int threadCount) throws IOException {
+        Files.createDirectories(Paths.get(indexDirectory));
+        this.indexDirectory = indexDirectory;
+        this.threadCount = threadCount;
+        this.manifest = SegmentManifest.read(indexDirectory);
+    }
+
+    /**
+     * Indexes a file of documents into a new segment and lists the segment in the manifest, then schedules
+     * the merges the new segment makes due.
+     * @param sourceFilePath Path of the documents, in the format of the DocumentParser.
+     * @return The new segment, or null if the file holds no documents.
+     * @throws IOException If the segment cannot be built.
+     */
+    public synchronized SegmentManifest.Entry addDocuments(String sourceFilePath) throws IOException {
+        String name;
+        synchronized (manifest) {
+            name = manifest.newSegmentName();
+        }
+        String segmentPath = createSegmentDirectory(name);
+        String temporaryPath = Paths.get(segmentPath, "temp").toString() + File.separator;
+        String documentDataPath = Paths.get(segmentPath, "document_data.ser").toString();
+        Files.createDirectories(Paths.get(temporaryPath));
+
+        // The parser numbers the documents of every segment from 0
+        DocumentParser.reset();
+        DocumentParser.parseDocuments(sourceFilePath, temporaryPath, documentDataPath, threadCount);
+        List<Document> documents = DocumentParser.getdocumentList();
+        if (documents.isEmpty()) {
+            deleteDirectory(segmentPath);
+            return null;
+        }
+        DocumentTable.write(documents, getFilePath(segmentPath, DOCUMENT_TABLE_FILE));
+        InvertedIndexBuilder.mergeAndCreateCompressedIndex(temporaryPath, getFilePath(segmentPath, INDEX_FILE),
+                getFilePath(segmentPath, LEXICON_FILE), getFilePath(segmentPath, DOCUMENT_TABLE_FILE), null,
+                SortedFileMerger.DEFAULT_MAX_FAN_IN, threadCount);
+        deleteDirectory(temporaryPath);
+        Files.delete(Paths.get(documentDataPath));
+
+        SegmentManifest.Entry segment = new SegmentManifest.Entry(name, documents.size());
+        synchronized (manifest) {
+            manifest.addSegment(segment);
+            manifest.write(indexDirectory);
+        }
+        merger.submit(this::mergeDueSegments);
+        return segment;
+    }
+
+    // Merges segments until no tier holds SEGMENTS_PER_TIER segments
+    private void mergeDueSegments() {
+        try {
+            List<SegmentManifest.Entry> segments;
+            while ((segments = findMerge()) != null) {
+                // The documents deleted when the merge starts are purged, numbering the others one segment after the other
+                List<BitSet> purgedDocuments = new ArrayList<>(segments.size());
+                synchronized (deletionLock) {
+                    for (SegmentManifest.Entry mergedSegment : segments) {
+                        purgedDocuments.add(DeletedDocuments.read(getDeletedDocumentsPath(mergedSegment.name)));
+                    }
+                }
+                List<int[]> newDocIds = new ArrayList<>(segments.size());
+                int baseDocId = 0;
+                for (int i = 0; i < segments.size(); i++) {
+                    int documentCount = segments.get(i).documentCount;
+                    newDocIds.add(DocIdMappingRunReader.compactDocIds(documentCount, purgedDocuments.get(i), baseDocId));
+                    baseDocId += documentCount - purgedDocuments.get(i).cardinality();
+                }
+
+                SegmentManifest.Entry segment = mergeSegments(segments, newDocIds);
+                synchronized (deletionLock) {
+                    carryOverDeletions(segments, purgedDocuments, newDocIds, segment);
+                    synchronized (manifest) {
+                        manifest.replaceSegments(segments, segment);
+                        manifest.write(indexDirectory);
+                    }
+                }
+                // Searches that opened the merged segments keep reading the files they have open
+                for (SegmentManifest.Entry mergedSegment : segments) {
+                    deleteDirectory(SegmentManifest.getSegmentPath(indexDirectory, mergedSegment.name));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Marks deleted in a merged segment the documents deleted in the segments it replaces while the merge ran
+    private void carryOverDeletions(List<SegmentManifest.Entry> segments, List<BitSet> purgedDocuments, List<int[]> newDocIds,
+                                    SegmentManifest.Entry segment) throws IOException {
+        BitSet deletedDocuments = new BitSet();
+        for (int i = 0; i < segments.size(); i++) {
+            BitSet deletedDuringMerge = DeletedDocuments.read(getDeletedDocumentsPath(segments.get(i).name));
+            deletedDuringMerge.andNot(purgedDocuments.get(i));
+            for (int docId = deletedDuringMerge.nextSetBit(0); docId >= 0; docId = deletedDuringMerge.nextSetBit(docId + 1)) {
+                deletedDocuments.set(newDocIds.get(i)[docId]);
+            }
+        }
+        if (!deletedDocuments.isEmpty()) {
+            DeletedDocuments.write(deletedDocuments, getDeletedDocumentsPath(segment.name));
+        }
+    }
+
+    // Picks the smallest SEGMENTS_PER_TIER segments of the lowest tier that holds as many, or null if no tier does
+    private List<SegmentManifest.Entry> findMerge() {
+        Map<Integer, List<SegmentManifest.Entry>> tiers = new TreeMap<>();
+        synchronized (manifest) {
+            for (SegmentManifest.Entry segment : manifest.getSegments()) {
+                tiers.computeIfAbsent(getTier(segment.documentCount), tier -> new ArrayList<>()).add(segment);
+            }
+        }
+        for (List<SegmentManifest.Entry> tier : tiers.values()) {
+            if (tier.size() >= SEGMENTS_PER_TIER) {
+                tier.sort(Comparator.comparingInt(segment -> segment.documentCount));
+                return new ArrayList<>(tier.subList(0, SEGMENTS_PER_TIER));
+            }
+        }
+        return null;
+    }
+
+    // Tier of a segment: 0 up to LOWEST_TIER_SIZE documents, one more for every SEGMENTS_PER_TIER times as many
+    private static int getTier(int documentCount) {
+        int tier = 0;
+        for (long tierSize = LOWEST_TIER_SIZE; documentCount > tierSize; tierSize *= SEGMENTS_PER_TIER) {
+            tier++;
+        }
+        return tier;
+    }
+
+    /**
+     * Marks the documents with any of the given URLs deleted in the live segments. They are skipped by searches
+     * that open the index from then on, and purged from their segments when those are merged.
+     * @param urls URLs of the documents to delete.
+     * @return Number of documents deleted.
+     * @throws IOException If a segment cannot be read or its deleted documents file written.
+     */
+    public int deleteDocuments(Set<String> urls) throws IOException {
+        int deletedCount = 0;
+        synchronized (deletionLock) {
+            List<SegmentManifest.Entry> segments;
+            synchronized (manifest) {
+                segments = new ArrayList<>(manifest.getSegments());
+            }
+            for (SegmentManifest.Entry segment : segments) {
+                String segmentPath = SegmentManifest.getSegmentPath(indexDirectory, segment.name);
+                String deletedDocumentsPath = getDeletedDocumentsPath(segment.name);
+                BitSet deletedDocuments = DeletedDocuments.read(deletedDocumentsPath);
+                int markedCount = DeletedDocuments.markDeleted(DocumentTable.open(getFilePath(segmentPath, DOCUMENT_TABLE_FILE)),
+                        urls, deletedDocuments);
+                if (markedCount > 0) {
+                    DeletedDocuments.write(deletedDocuments, deletedDocumentsPath);
+                    deletedCount += markedCount;
+                }
+            }
+        }
+        return deletedCount;
+    }
+
+    /**
+     * Merges segments into a new one, renumbering their documents and leaving out the dropped ones.
+     * The postings of the segments are read back from their indexes and merged by term, so nothing is parsed again.
+     * @param segments Segments to merge.
+     * @param newDocIds New ID of every document of each segment, or DocIdMappingRunReader.DROPPED; kept documents
+     *                  are numbered one segment after the other.
+     * @return The new segment, not yet listed in the manifest.
+     * @throws IOException If the segment cannot be built.
+     */
+    private SegmentManifest.Entry mergeSegments(List<SegmentManifest.Entry> segments, List<int[]> newDocIds) throws IOException {
+        String name;
+        synchronized (manifest) {
+            name = manifest.newSegmentName();
+        }
+        String segmentPath = createSegmentDirectory(name);
+
+        List<Document> documents = new ArrayList<>();
+        List<RunReader> runs = new ArrayList<>(segments.size());
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                String mergedPath = SegmentManifest.getSegmentPath(indexDirectory, segments.get(i).name);
+                DocumentTable table = DocumentTable.open(getFilePath(mergedPath, DOCUMENT_TABLE_FILE));
+                int[] segmentDocIds = newDocIds.get(i);
+                for (int docId = 0; docId < table.getDocumentCount(); docId++) {
+                    if (segmentDocIds[docId] != DocIdMappingRunReader.DROPPED) {
+                        documents.add(new Document(segmentDocIds[docId], table.getUrl(docId), table.getTermCount(docId)));
+                    }
+                }
+                Map<String, Lexicon> lexiconMap = LexiconFileHandler.readLexicon(getFilePath(mergedPath, LEXICON_FILE));
+                runs.add(new DocIdMappingRunReader(new IndexRunReader(getFilePath(mergedPath, INDEX_FILE), lexiconMap), segmentDocIds));
+            }
+            DocumentTable.write(documents, getFilePath(segmentPath, DOCUMENT_TABLE_FILE));
+            InvertedIndexBuilder.createCompressedIndex(new LoserTree(runs), getFilePath(segmentPath, INDEX_FILE),
+                    getFilePath(segmentPath, LEXICON_FILE), getFilePath(segmentPath, DOCUMENT_TABLE_FILE), null);
+        } finally {
+            for (RunReader run : runs) {
+                run.close();
+            }
+        }
+        return new SegmentManifest.Entry(name, documents.size());
+    }
+
+    // A segment directory left behind by a build that never reached the manifest is replaced
+    private String createSegmentDirectory(String name) throws IOException {
+        String segmentPath = SegmentManifest.getSegmentPath(indexDirectory, name);
+        deleteDirectory(segmentPath);
+        Files.createDirectories(Paths.get(segmentPath));
+        return segmentPath;
+    }
+
+    private static String getFilePath(String segmentPath, String fileName) {
+        return Paths.get(segmentPath, fileName).toString();
+    }
+
+    private String getDeletedDocumentsPath(String segmentName) {
+        return getFilePath(SegmentManifest.getSegmentPath(indexDirectory, segmentName), DeletedDocuments.FILE_NAME);
+    }
+
+    private static void deleteDirectory(String directoryPath) throws IOException {
+        Path directory = Paths.get(directoryPath);
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Waits for the scheduled merges to finish.
+     */
+    @Override
+    public void close() {
+        merger.shutdown();
+        try {
+            merger.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // SegmentIndexer <documents file>...: adds every file as a new segment, then waits for the merges they made due
+    // SegmentIndexer delete <url>...: marks the documents with the URLs deleted
+    public static void main(String[] args) {
+        String segmentsDirectoryPath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/segments/";
+
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        try (SegmentIndexer indexer = new SegmentIndexer(segmentsDirectoryPath, threadCount)) {
+            if (args.length > 0 && args[0].equals("delete")) {
+                int deletedCount = indexer.deleteDocuments(new HashSet<>(Arrays.asList(args).subList(1, args.length)));
+                System.out.println("Deleted " + deletedCount + " documents");
+                return;
+            }
+            for (String sourceFilePath : args) {
+                long startTime = System.currentTimeMillis();
+                SegmentManifest.Entry segment = indexer.addDocuments(sourceFilePath);
+                String formattedTime = Util.formatTime(System.currentTimeMillis() - startTime);
+                if (segment == null) {
+                    System.out.println("No documents in " + sourceFilePath);
+                } else {
+                    System.out.println("Added " + segment.documentCount + " documents as " + segment.name + " in: " + formattedTime);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import io.DeletedDocuments;
+import io.DocumentTable;
+import io.LexiconFileHandler;
+import io.SegmentManifest;
+import model.Document;
+import model.Lexicon;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * The live segments of a segmented index, opened for searching as the manifest listed them when the index was opened.
+ * Documents are numbered across the index one segment after the other, in manifest order.
+ */
+public class SegmentedIndex implements Closeable {
+
+    public static class Segment {
+        public final String name;
+        public final Map<String, Lexicon> lexiconMap;
+        public final RandomAccessFile indexFile;
+        public final DocumentTable documents;
+        // Number of the segment's first document across the index
+        public final int baseDocId;
+
+        Segment(String name, Map<String, Lexicon> lexiconMap, RandomAccessFile indexFile, DocumentTable documents, int baseDocId) {
+            this.name = name;
+            this.lexiconMap = lexiconMap;
+            this.indexFile = indexFile;
+            this.documents = documents;
+            this.baseDocId = baseDocId;
+        }
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private int documentCount = 0;
+    private long totalTermCount = 0;
+
+    /**
+     * Opens the live segments of an index.
+     * @param indexDirectory Directory of the segmented index.
+     * @return The opened index, without segments if nothing was indexed yet.
+     * @throws IOException If a segment cannot be opened.
+     */
+    public static SegmentedIndex open(String indexDirectory) throws IOException {
+        SegmentedIndex index = new SegmentedIndex();
+        try {
+            for (SegmentManifest.Entry entry : SegmentManifest.read(indexDirectory).getSegments()) {
+                String segmentPath = SegmentManifest.getSegmentPath(indexDirectory, entry.name);
+                DocumentTable documents = DocumentTable.open(Paths.get(segmentPath, SegmentIndexer.DOCUMENT_TABLE_FILE).toString());
+                documents.setDeletedDocuments(DeletedDocuments.read(Paths.get(segmentPath, DeletedDocuments.FILE_NAME).toString()));
+                Map<String, Lexicon> lexiconMap = LexiconFileHandler.readLexicon(Paths.get(segmentPath, SegmentIndexer.LEXICON_FILE).toString());
+                RandomAccessFile indexFile = new RandomAccessFile(Paths.get(segmentPath, SegmentIndexer.INDEX_FILE).toString(), "r");
+                index.segments.add(new Segment(entry.name, lexiconMap, indexFile, documents, index.documentCount));
+                index.documentCount += documents.getDocumentCount();
+                index.totalTermCount += Math.round(documents.getAverageTermCount() * documents.getDocumentCount());
+            }
+        } catch (IOException e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public double getAverageTermCount() {
+        return documentCount == 0 ? 0 : (double) totalTermCount / documentCount;
+    }
+
+    // Number of documents of the whole index that hold the term
+    public int getDocumentFrequency(String term) {
+        int documentFrequency = 0;
+        for (Segment segment : segments) {
+            Lexicon lexicon = segment.lexiconMap.get(term);
+            if (lexicon != null) {
+                documentFrequency += lexicon.getDocumentFrequency();
+            }
+        }
+        return documentFrequency;
+    }
+
+    // Document with the given number across the index
+    public Document getDocument(int docId) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (docId >= segment.baseDocId) {
+                Document document = segment.documents.getDocument(docId - segment.baseDocId);
+                document.docId = docId;
+                return document;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.indexFile.close();
+        }
+    }
+}
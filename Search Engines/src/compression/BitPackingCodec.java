@@ -0,0 +1,87 @@
+package compression;
+
+/**
+ * Fixed-width binary packing: one byte holding the bit width of the largest value,
+ * then every value in that many bits, packed least significant bit first.
+ */
+public class BitPackingCodec implements PostingCodec {
+    public static final int ID = 1;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "BitPacking";
+    }
+
+    @Override
+    public int encode(int[] values, int count, byte[] output, int offset) {
+        int bits = 0;
+        for (int i = 0; i < count; i++) {
+            bits = Math.max(bits, bitWidth(values[i]));
+        }
+        output[offset++] = (byte) bits;
+        return pack(values, count, bits, output, offset);
+    }
+
+    @Override
+    public int decode(byte[] input, int offset, int count, int[] output) {
+        int bits = input[offset++];
+        return unpack(input, offset, count, bits, output);
+    }
+
+    static int bitWidth(int value) {
+        return 32 - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Writes the low bits of each value, least significant bit first.
+     * @return Offset just after the last byte written.
+     */
+    static int pack(int[] values, int count, int bits, byte[] output, int offset) {
+        long mask = (1L << bits) - 1;
+        long buffer = 0;
+        int bufferedBits = 0;
+        for (int i = 0; i < count; i++) {
+            buffer |= (values[i] & mask) << bufferedBits;
+            bufferedBits += bits;
+            while (bufferedBits >= 8) {
+                output[offset++] = (byte) buffer;
+                buffer >>>= 8;
+                bufferedBits -= 8;
+            }
+        }
+        if (bufferedBits > 0) {
+            output[offset++] = (byte) buffer;
+        }
+        return offset;
+    }
+
+    /**
+     * Reads values written by {@link #pack}.
+     * @return Offset just after the last byte read.
+     */
+    static int unpack(byte[] input, int offset, int count, int bits, int[] output) {
+        long mask = (1L << bits) - 1;
+        long buffer = 0;
+        int bufferedBits = 0;
+        for (int i = 0; i < count; i++) {
+            while (bufferedBits < bits) {
+                buffer |= (input[offset++] & 0xFFL) << bufferedBits;
+                bufferedBits += 8;
+            }
+            output[i] = (int) (buffer & mask);
+            buffer >>>= bits;
+            bufferedBits -= bits;
+        }
+        return offset;
+    }
+
+    // Bytes taken by count values packed in the given width
+    static int packedSize(int count, int bits) {
+        return (count * bits + 7) >>> 3;
+    }
+}
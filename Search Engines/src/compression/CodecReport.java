@@ -0,0 +1,171 @@
+package compression;
+
+import io.PostingListWriter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Compares the posting codecs on the blocks of an existing index, read list by list from the start of the index file.
+ * Every block is decoded with the codec it was written with, then encoded and decoded again with each codec.
+ * Prints the bits per docId gap and per frequency of each codec, its decoding speed, the same for the per-block
+ * choice the builder makes, and how often the builder picked each codec.
+ */
+public class CodecReport {
+    // Decodes of each block per timing, so the timer's own cost stays small next to a block of 128 values
+    private static final int DECODE_REPEATS = 16;
+    // Blocks decoded to warm up the decoders before anything is timed
+    private static final int WARM_UP_BLOCKS = 20_000;
+
+    private static final List<PostingCodec> CODECS = PostingCodec.CODECS;
+
+    private final long[] docIdBytes = new long[CODECS.size()];
+    private final long[] termFreqBytes = new long[CODECS.size()];
+    private final long[] docIdNanos = new long[CODECS.size()];
+    private final long[] termFreqNanos = new long[CODECS.size()];
+    private final long[] docIdChoices = new long[CODECS.size()];
+    private final long[] termFreqChoices = new long[CODECS.size()];
+    private long smallestDocIdBytes = 0;
+    private long smallestTermFreqBytes = 0;
+    private long postingCount = 0;
+    private long blockCount = 0;
+
+    private final byte[] encoded = new byte[PostingCodec.maxEncodedSize(1 << 10)];
+    private final int[] decoded = new int[1 << 10];
+    private final int[] docIdGaps = new int[PostingListWriter.BLOCK_SIZE];
+    private final int[] termFreqs = new int[PostingListWriter.BLOCK_SIZE];
+
+    /**
+     * Measures every codec on the blocks of an index.
+     * @param indexFilePath Path of the inverted index file.
+     * @param maxBlocks Number of blocks to measure, counted from the start of the index.
+     * @return The measurements.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static CodecReport measure(String indexFilePath, long maxBlocks) throws IOException {
+        CodecReport report = new CodecReport();
+        // A first pass over the start of the index lets the decoders get compiled before anything is timed
+        report.scan(indexFilePath, WARM_UP_BLOCKS, false);
+        report.scan(indexFilePath, maxBlocks, true);
+        return report;
+    }
+
+    private void scan(String indexFilePath, long maxBlocks, boolean isRecorded) throws IOException {
+        try (DataInputStream indexFile = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFilePath), 1 << 16))) {
+            long blocks = 0;
+            byte[] blockBytes = new byte[1 << 10];
+            while (indexFile.available() > 0 && blocks < maxBlocks) {
+                // Lists follow each other, each one header first
+                byte[] headerBytes = new byte[VarByte.decodeVarInt(indexFile)];
+                indexFile.readFully(headerBytes);
+                ByteBuffer header = ByteBuffer.wrap(headerBytes);
+                int blockCount = VarByte.decodeVarInt(header);
+                int postingCount = VarByte.decodeVarInt(header);
+                for (int group = 0; group < (blockCount + PostingListWriter.SKIP_INTERVAL - 1) / PostingListWriter.SKIP_INTERVAL; group++) {
+                    VarByte.decodeVarInt(header);
+                    VarByte.decodeVarInt(header);
+                    VarByte.decodeVarLong(header);
+                }
+
+                int lastDocId = 0;
+                for (int block = 0; block < blockCount; block++) {
+                    int previousDocId = lastDocId;
+                    lastDocId += VarByte.decodeVarInt(header);
+                    int docIdSize = VarByte.decodeVarInt(header);
+                    int termFreqSize = VarByte.decodeVarInt(header);
+                    byte codecs = header.get();
+                    header.getFloat();
+                    if (blockBytes.length < docIdSize + termFreqSize) {
+                        blockBytes = new byte[docIdSize + termFreqSize];
+                    }
+                    indexFile.readFully(blockBytes, 0, docIdSize + termFreqSize);
+                    if (blocks >= maxBlocks) {
+                        continue; // Read through to the end of the list all the same
+                    }
+
+                    int size = Math.min(PostingListWriter.BLOCK_SIZE, postingCount - block * PostingListWriter.BLOCK_SIZE);
+                    PostingBlockCompressor.decompressDocIds(blockBytes, 0, size, PostingBlockCompressor.getDocIdCodec(codecs),
+                            previousDocId, docIdGaps);
+                    for (int i = size - 1; i > 0; i--) {
+                        docIdGaps[i] -= docIdGaps[i - 1]; // Back to the gaps the codecs encode
+                    }
+                    docIdGaps[0] -= previousDocId;
+                    PostingBlockCompressor.decompressTermFreqs(blockBytes, docIdSize, size, PostingBlockCompressor.getTermFreqCodec(codecs), termFreqs);
+
+                    addBlock(docIdGaps, termFreqs, size, isRecorded);
+                    if (isRecorded) {
+                        docIdChoices[PostingBlockCompressor.getDocIdCodec(codecs)]++;
+                        termFreqChoices[PostingBlockCompressor.getTermFreqCodec(codecs)]++;
+                    }
+                    blocks++;
+                }
+            }
+        }
+    }
+
+    private void addBlock(int[] docIdGaps, int[] termFreqs, int size, boolean isRecorded) {
+        int smallestDocIdBlock = Integer.MAX_VALUE, smallestTermFreqBlock = Integer.MAX_VALUE;
+        for (PostingCodec codec : CODECS) {
+            int id = codec.getId();
+            int docIdLength = codec.encode(docIdGaps, size, encoded, 0);
+            long docIdTime = timeDecode(codec, docIdLength, size);
+            int termFreqLength = codec.encode(termFreqs, size, encoded, 0);
+            long termFreqTime = timeDecode(codec, termFreqLength, size);
+            smallestDocIdBlock = Math.min(smallestDocIdBlock, docIdLength);
+            smallestTermFreqBlock = Math.min(smallestTermFreqBlock, termFreqLength);
+            if (isRecorded) {
+                docIdBytes[id] += docIdLength;
+                termFreqBytes[id] += termFreqLength;
+                docIdNanos[id] += docIdTime;
+                termFreqNanos[id] += termFreqTime;
+            }
+        }
+        if (isRecorded) {
+            smallestDocIdBytes += smallestDocIdBlock;
+            smallestTermFreqBytes += smallestTermFreqBlock;
+            postingCount += size;
+            blockCount++;
+        }
+    }
+
+    private long timeDecode(PostingCodec codec, int length, int size) {
+        long start = System.nanoTime();
+        for (int repeat = 0; repeat < DECODE_REPEATS; repeat++) {
+            if (codec.decode(encoded, 0, size, decoded) != length) {
+                throw new IllegalStateException(codec.getName() + " did not decode what it encoded");
+            }
+        }
+        return (System.nanoTime() - start) / DECODE_REPEATS;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%d blocks, %d postings%n", blockCount, postingCount);
+        out.printf("%-12s %12s %12s %18s %18s %14s %14s%n", "Codec", "bits/docId", "bits/tf",
+                "docId M ints/s", "tf M ints/s", "docId blocks", "tf blocks");
+        for (PostingCodec codec : CODECS) {
+            int id = codec.getId();
+            out.printf("%-12s %12.3f %12.3f %18.1f %18.1f %14d %14d%n", codec.getName(),
+                    bitsPerPosting(docIdBytes[id]), bitsPerPosting(termFreqBytes[id]),
+                    intsPerMicrosecond(docIdNanos[id]), intsPerMicrosecond(termFreqNanos[id]),
+                    docIdChoices[id], termFreqChoices[id]);
+        }
+        out.printf("%-12s %12.3f %12.3f%n", "Per block", bitsPerPosting(smallestDocIdBytes), bitsPerPosting(smallestTermFreqBytes));
+    }
+
+    private double bitsPerPosting(long bytes) {
+        return postingCount == 0 ? 0.0 : 8.0 * bytes / postingCount;
+    }
+
+    // Postings per microsecond is millions of postings per second
+    private double intsPerMicrosecond(long nanos) {
+        return nanos == 0 ? 0.0 : postingCount * 1000.0 / nanos;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String invertedIndexFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/inverted_index.bin";
+        long maxBlocks = args.length > 0 ? Long.parseLong(args[0]) : Long.MAX_VALUE;
+
+        measure(invertedIndexFilePath, maxBlocks).print(System.out);
+    }
+}
@@ -0,0 +1,119 @@
+package compression;
+
+/**
+ * Patched frame of reference in the style of NewPFD/OptPFor.
+ * Every value is bit-packed in b bits, and the values that do not fit are patched as exceptions whose
+ * positions and high bits are stored after the packed values. Like OptPFor, b is the width giving the smallest block.
+ * Exception positions and high bits are VarByte-coded rather than Simple-16-coded as in the original scheme.
+ *
+ * <BLOCK>
+ * b                byte
+ * exceptionCount   VarByte
+ * lowBits          the low b bits of every value, see {@link BitPackingCodec}
+ * exceptions       (VarByte position gap, VarByte value >>> b) per exception
+ */
+public class PForDeltaCodec implements PostingCodec {
+    public static final int ID = 3;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "OptPFor";
+    }
+
+    @Override
+    public int encode(int[] values, int count, byte[] output, int offset) {
+        int bits = chooseBitWidth(values, count);
+        int exceptionCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (BitPackingCodec.bitWidth(values[i]) > bits) {
+                exceptionCount++;
+            }
+        }
+        output[offset++] = (byte) bits;
+        offset = writeVarInt(exceptionCount, output, offset);
+        offset = BitPackingCodec.pack(values, count, bits, output, offset);
+        int lastPosition = 0;
+        for (int i = 0; i < count; i++) {
+            if (BitPackingCodec.bitWidth(values[i]) > bits) {
+                offset = writeVarInt(i - lastPosition, output, offset);
+                offset = writeVarInt(values[i] >>> bits, output, offset);
+                lastPosition = i;
+            }
+        }
+        return offset;
+    }
+
+    // Tries every width and keeps the one with the smallest encoded size
+    private static int chooseBitWidth(int[] values, int count) {
+        // Number of values of each bit width
+        int[] widthCounts = new int[33];
+        for (int i = 0; i < count; i++) {
+            widthCounts[BitPackingCodec.bitWidth(values[i])]++;
+        }
+        int bestBits = 32;
+        long bestSize = Long.MAX_VALUE;
+        for (int bits = 32; bits >= 0; bits--) {
+            long size = 1 + BitPackingCodec.packedSize(count, bits);
+            int exceptionCount = 0;
+            for (int width = bits + 1; width <= 32; width++) {
+                if (widthCounts[width] > 0) {
+                    exceptionCount += widthCounts[width];
+                    // Position gaps mostly fit in a byte; high parts take a byte per 7 bits
+                    size += widthCounts[width] * (1L + (width - bits + 6) / 7);
+                }
+            }
+            size += VarByteCodec.size(exceptionCount);
+            if (size < bestSize) {
+                bestSize = size;
+                bestBits = bits;
+            }
+        }
+        return bestBits;
+    }
+
+    @Override
+    public int decode(byte[] input, int offset, int count, int[] output) {
+        int bits = input[offset++];
+        int exceptionCount = 0, shift = 0;
+        byte b;
+        do {
+            b = input[offset++];
+            exceptionCount |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        offset = BitPackingCodec.unpack(input, offset, count, bits, output);
+        int position = 0;
+        for (int e = 0; e < exceptionCount; e++) {
+            int gap = 0, high = 0;
+            shift = 0;
+            do {
+                b = input[offset++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            shift = 0;
+            do {
+                b = input[offset++];
+                high |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            position += gap;
+            output[position] |= high << bits;
+        }
+        return offset;
+    }
+
+    private static int writeVarInt(int value, byte[] output, int offset) {
+        while ((value & 0xFFFFFF80) != 0) {
+            output[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output[offset++] = (byte) value;
+        return offset;
+    }
+}
@@ -1,109 +1,146 @@
 package compression;
 
 import model.Posting;
-import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.ArrayList;
+
+import java.io.ByteArrayOutputStream;
 import java.util.List;
 /**
  * Utilities for compressing and decompressing blocks of postings data.
+ * The docIds and the frequencies of a block are each written with whichever {@link PostingCodec} encodes
+ * them in the fewest bytes, and the two choices are recorded next to the block, see {@link #packCodecs}.
  */
 public class PostingBlockCompressor {
-    /**
-     * Compresses a block of postings and updates metadata.
-     * @param postings List of postings to compress.
-     * @param indexFile RandomAccessFile to write compressed data.
-     * @param lastDocIds List to store the last document IDs of each block.
-     * @param docIdBlockStarts List to store start positions of each docID block.
-     * @param docIdBlockSizes List to store sizes of each docID block.
-     * @param termFreqBlockStarts List to store start positions of each frequency block.
-     * @param termFreqBlockSizes List to store sizes of each frequency block.
-     * @throws IOException If an I/O error occurs.
-     */
-    public static void compressPostingBlock(List<Posting> postings, RandomAccessFile indexFile,
-                                     List<Integer> lastDocIds, List<Long> docIdBlockStarts,
-                                     List<Integer> docIdBlockSizes, List<Long> termFreqBlockStarts,
-                                     List<Integer> termFreqBlockSizes) throws IOException {
 
-        long docIdBlockStart = indexFile.getFilePointer(); // Get starting position of the docID block
-        int docIdBlockSize = compressDocIds(postings, indexFile); // Compress document IDs
-        long termFreqBlockStart = indexFile.getFilePointer(); // Get starting position of the term frequency block
-        int termFreqBlockSize = compressTermFreqs(postings, indexFile); // Compress term frequencies
+    // Both codec IDs of a block in one byte, the docId codec in the low four bits
+    public static byte packCodecs(int docIdCodec, int termFreqCodec) {
+        return (byte) (docIdCodec | termFreqCodec << 4);
+    }
+
+    public static int getDocIdCodec(byte blockCodecs) {
+        return blockCodecs & 0x0F;
+    }
 
-        // Updating metadata lists with new block information
-        lastDocIds.add(postings.get(postings.size() - 1).docId);
-        docIdBlockStarts.add(docIdBlockStart);
-        docIdBlockSizes.add(docIdBlockSize);
-        termFreqBlockStarts.add(termFreqBlockStart);
-        termFreqBlockSizes.add(termFreqBlockSize);
+    public static int getTermFreqCodec(byte blockCodecs) {
+        return (blockCodecs >>> 4) & 0x0F;
     }
 
     /**
-     * Compresses document IDs from a list of postings.
+     * Compresses document IDs from a list of postings as gaps.
      * @param postings List of postings.
-     * @param indexFile RandomAccessFile to write to.
-     * @return Size of the compressed block.
-     * @throws IOException If an I/O error occurs.
+     * @param previousDocId Last document ID of the previous block of the list, or 0 for the first block.
+     * @param output Stream to write to.
+     * @return ID of the codec used.
      */
-    private static int compressDocIds(List<Posting> postings, RandomAccessFile indexFile) throws IOException {
-        int lastDocId = 0;
-        int blockSize = 0;
-        for (Posting posting : postings) {
-            int delta = posting.docId - lastDocId;  // Calculate difference (delta) encoding for docIDs
-            VarByte.encodeVarInt(indexFile, delta); // Encode and write the delta value
-            lastDocId = posting.docId; // Update lastDocId for next iteration
-            blockSize++; // Increment block size
+    public static int compressDocIds(List<Posting> postings, int previousDocId, ByteArrayOutputStream output) {
+        int[] docIds = new int[postings.size()];
+        for (int i = 0; i < docIds.length; i++) {
+            docIds[i] = postings.get(i).docId;
         }
-        return blockSize; // Return the size of the compressed block
+        return compressDocIds(docIds, docIds.length, previousDocId, output);
+    }
+
+    /**
+     * Compresses ascending document IDs as gaps, however many there are.
+     * @param docIds Document IDs, in ascending order.
+     * @param count Number of document IDs to compress.
+     * @param previousDocId Document ID the first gap is taken from.
+     * @param output Stream to write to.
+     * @return ID of the codec used.
+     */
+    public static int compressDocIds(int[] docIds, int count, int previousDocId, ByteArrayOutputStream output) {
+        int[] deltas = new int[count];
+        int lastDocId = previousDocId;
+        for (int i = 0; i < count; i++) {
+            int docId = docIds[i];
+            deltas[i] = docId - lastDocId;  // Calculate difference (delta) encoding for docIDs
+            lastDocId = docId; // Update lastDocId for next iteration
+        }
+        return writeSmallest(deltas, count, output);
     }
 
     /**
      * Compresses frequencies from a list of postings.
      * @param postings List of postings.
-     * @param indexFile RandomAccessFile to write to.
-     * @return Size of the compressed block.
-     * @throws IOException If an I/O error occurs.
+     * @param output Stream to write to.
+     * @return ID of the codec used.
+     */
+    public static int compressTermFreqs(List<Posting> postings, ByteArrayOutputStream output) {
+        int[] freqs = new int[postings.size()];
+        for (int i = 0; i < freqs.length; i++) {
+            freqs[i] = postings.get(i).termFreq;
+        }
+        return writeSmallest(freqs, freqs.length, output);
+    }
+
+    /**
+     * Compresses the positions of a block of postings, given as gaps within every posting.
+     * @param positionGaps Position gaps, those of each posting starting from 0.
+     * @param count Number of gaps to compress.
+     * @param output Stream to write to.
+     * @return ID of the codec used.
      */
-    private static int compressTermFreqs(List<Posting> postings, RandomAccessFile indexFile) throws IOException {
-        int blockSize = 0;
-        for (Posting posting : postings) {
-            VarByte.encodeVarInt(indexFile, posting.termFreq); // Encode and write term frequency
-            blockSize++; // Increment block size
+    public static int compressPositions(int[] positionGaps, int count, ByteArrayOutputStream output) {
+        return writeSmallest(positionGaps, count, output);
+    }
+
+    // Encodes the values with every codec and writes the shortest encoding, preferring lower codec IDs on ties
+    private static int writeSmallest(int[] values, int count, ByteArrayOutputStream output) {
+        byte[] encoded = new byte[PostingCodec.maxEncodedSize(count)];
+        byte[] best = new byte[encoded.length];
+        int bestLength = Integer.MAX_VALUE;
+        int bestCodec = VarByteCodec.ID;
+        for (PostingCodec codec : PostingCodec.CODECS) {
+            int length = codec.encode(values, count, encoded, 0);
+            if (length < bestLength) {
+                byte[] swap = best;
+                best = encoded;
+                encoded = swap;
+                bestLength = length;
+                bestCodec = codec.getId();
+            }
         }
-        return blockSize; // Return the size of the compressed block
+        output.write(best, 0, bestLength);
+        return bestCodec;
     }
 
     /**
      * Decompresses document IDs from a compressed block.
-     * @param indexFile RandomAccessFile to read from.
-     * @param blockSize Size of the block to decompress.
-     * @return List of decompressed document IDs.
-     * @throws IOException If an I/O error occurs.
+     * @param input Buffer holding the block.
+     * @param offset Offset of the block in the buffer.
+     * @param blockSize Number of postings in the block.
+     * @param codecId ID of the codec of the block.
+     * @param previousDocId Last document ID of the previous block of the list, or 0 for the first block.
+     * @param docIds Array receiving the document IDs.
      */
-    public static List<Integer> decompressDocIds(RandomAccessFile indexFile, int blockSize) throws IOException {
-        List<Integer> docIds = new ArrayList<>(blockSize);
-        int lastDocId = 0;
+    public static void decompressDocIds(byte[] input, int offset, int blockSize, int codecId, int previousDocId, int[] docIds) {
+        PostingCodec.byId(codecId).decode(input, offset, blockSize, docIds);
+        int lastDocId = previousDocId;
         for (int i = 0; i < blockSize; i++) {
-            int delta = VarByte.decodeVarInt(indexFile); // Decode delta value
-            lastDocId += delta; // Restore original document ID
-            docIds.add(lastDocId);  // Add to list of document IDs
+            lastDocId = docIds[i] += lastDocId; // Restore original document IDs
         }
-        return docIds; // Return the list of decompressed document IDs
     }
 
     /**
      * Decompresses frequencies from a compressed block.
-     * @param indexFile RandomAccessFile to read from.
-     * @param blockSize Size of the block to decompress.
-     * @return List of decompressed frequencies.
-     * @throws IOException If an I/O error occurs.
+     * @param input Buffer holding the block.
+     * @param offset Offset of the block in the buffer.
+     * @param blockSize Number of postings in the block.
+     * @param codecId ID of the codec of the block.
+     * @param freqs Array receiving the frequencies.
      */
-    public static List<Integer> decompressTermFreqs(RandomAccessFile indexFile, int blockSize) throws IOException {
-        List<Integer> freqs = new ArrayList<>(blockSize);
-        for (int i = 0; i < blockSize; i++) {
-            int freq = VarByte.decodeVarInt(indexFile); // Decode frequency value
-            freqs.add(freq); // Add to list of frequencies
-        }
-        return freqs; // Return the list of decompressed frequencies
+    public static void decompressTermFreqs(byte[] input, int offset, int blockSize, int codecId, int[] freqs) {
+        PostingCodec.byId(codecId).decode(input, offset, blockSize, freqs);
+    }
+
+    /**
+     * Decompresses the position gaps of a block of postings; the gaps are left for the caller to add up per posting.
+     * @param input Buffer holding the positions of the block.
+     * @param offset Offset of the positions in the buffer.
+     * @param count Number of positions, the sum of the frequencies of the block.
+     * @param codecId ID of the codec of the positions.
+     * @param positionGaps Array receiving the gaps.
+     */
+    public static void decompressPositions(byte[] input, int offset, int count, int codecId, int[] positionGaps) {
+        PostingCodec.byId(codecId).decode(input, offset, count, positionGaps);
     }
 }
@@ -0,0 +1,51 @@
+package compression;
+
+import java.util.List;
+
+/**
+ * Encodes a block of non-negative integers, such as docId gaps or term frequencies, into bytes.
+ * The number of values is not stored; the caller records it and passes it back to {@link #decode}.
+ * Every codec has a small ID that the index stores next to each block it encoded.
+ */
+public interface PostingCodec {
+    List<PostingCodec> CODECS = List.of(new VarByteCodec(), new BitPackingCodec(), new Simple8bCodec(), new PForDeltaCodec());
+
+    /**
+     * @param id ID stored for a block.
+     * @return The codec with that ID.
+     */
+    static PostingCodec byId(int id) {
+        return CODECS.get(id);
+    }
+
+    /**
+     * Upper bound of the encoded size of count values for every codec, for sizing buffers.
+     */
+    static int maxEncodedSize(int count) {
+        return 8 * count + 16;
+    }
+
+    int getId();
+
+    String getName();
+
+    /**
+     * Encodes values.
+     * @param values Values to encode, all non-negative.
+     * @param count Number of values to encode.
+     * @param output Buffer to encode into, with room for {@link #maxEncodedSize} bytes after the offset.
+     * @param offset Offset in the buffer to start at.
+     * @return Offset just after the encoded bytes.
+     */
+    int encode(int[] values, int count, byte[] output, int offset);
+
+    /**
+     * Decodes values.
+     * @param input Buffer holding the encoded values.
+     * @param offset Offset of the encoded values in the buffer.
+     * @param count Number of values to decode.
+     * @param output Array receiving the values.
+     * @return Offset just after the encoded bytes.
+     */
+    int decode(byte[] input, int offset, int count, int[] output);
+}
@@ -0,0 +1,80 @@
+package compression;
+
+/**
+ * Simple-8b: 64-bit words holding a 4-bit selector and 60 bits of payload.
+ * The selector tells how many values of which width the word packs; selectors 0 and 1 stand for runs of zeros.
+ * A word may hold fewer values than its selector allows at the end of a block. Words are written little-endian.
+ */
+public class Simple8bCodec implements PostingCodec {
+    public static final int ID = 2;
+
+    private static final int[] VALUES_PER_WORD = {240, 120, 60, 30, 20, 15, 12, 10, 8, 7, 6, 5, 4, 3, 2, 1};
+    private static final int[] BITS_PER_VALUE = {0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 10, 12, 15, 20, 30, 60};
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "Simple-8b";
+    }
+
+    @Override
+    public int encode(int[] values, int count, byte[] output, int offset) {
+        int i = 0;
+        while (i < count) {
+            // The densest selector whose values all fit; the last one fits any int
+            int selector = 0;
+            int n = 0;
+            for (; selector < VALUES_PER_WORD.length; selector++) {
+                n = Math.min(VALUES_PER_WORD[selector], count - i);
+                if (fits(values, i, n, BITS_PER_VALUE[selector])) {
+                    break;
+                }
+            }
+            int bits = BITS_PER_VALUE[selector];
+            long word = (long) selector << 60;
+            for (int j = 0; j < n && bits > 0; j++) {
+                word |= (values[i + j] & 0xFFFFFFFFL) << (j * bits);
+            }
+            for (int b = 0; b < Long.BYTES; b++) {
+                output[offset++] = (byte) (word >>> (8 * b));
+            }
+            i += n;
+        }
+        return offset;
+    }
+
+    private static boolean fits(int[] values, int from, int n, int bits) {
+        if (bits >= 32) {
+            return true;
+        }
+        for (int j = from; j < from + n; j++) {
+            if ((values[j] >>> bits) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int decode(byte[] input, int offset, int count, int[] output) {
+        int i = 0;
+        while (i < count) {
+            long word = 0;
+            for (int b = 0; b < Long.BYTES; b++) {
+                word |= (input[offset++] & 0xFFL) << (8 * b);
+            }
+            int selector = (int) (word >>> 60);
+            int n = Math.min(VALUES_PER_WORD[selector], count - i);
+            int bits = BITS_PER_VALUE[selector];
+            long mask = (1L << bits) - 1;
+            for (int j = 0; j < n; j++) {
+                output[i++] = (int) ((word >>> (j * bits)) & mask);
+            }
+        }
+        return offset;
+    }
+}
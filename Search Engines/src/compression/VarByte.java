@@ -1,5 +1,8 @@
 package compression;
+import io.IndexWriter;
+
 import java.io.*;
+import java.nio.ByteBuffer;
 
 public class VarByte {
     /**
@@ -60,6 +63,35 @@ public class VarByte {
         return result;
     }
 
+    /**
+     * Decodes a variable-length integer from a ByteBuffer.
+     */
+    public static int decodeVarInt(ByteBuffer buffer) {
+        int result = 0, shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return result;
+    }
+
+    /**
+     * Decodes a variable-length long from a ByteBuffer.
+     */
+    public static long decodeVarLong(ByteBuffer buffer) {
+        long result = 0;
+        int shift = 0;
+        long b;
+        do {
+            b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return result;
+    }
+
     /**
      * Encodes and writes a variable-length integer to a DataOutputStream.
      */
@@ -103,4 +135,26 @@ public class VarByte {
         }
         file.writeByte((int) value & 0x7F);
     }
+
+    /**
+     * Encodes and writes a variable-length integer to an IndexWriter.
+     */
+    public static void encodeVarInt(IndexWriter writer, int value) throws IOException {
+        while ((value & 0xFFFFFF80) != 0L) {
+            writer.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writer.writeByte(value & 0x7F);
+    }
+
+    /**
+     * Encodes and writes a variable-length long to an IndexWriter.
+     */
+    public static void encodeVarLong(IndexWriter writer, long value) throws IOException {
+        while ((value & 0xFFFFFFFFFFFFFF80L) != 0L) {
+            writer.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writer.writeByte((int) value & 0x7F);
+    }
 }
@@ -0,0 +1,56 @@
+package compression;
+
+/**
+ * Byte-aligned variable-length codec, the same bytes as {@link VarByte#encodeVarInt}.
+ */
+public class VarByteCodec implements PostingCodec {
+    public static final int ID = 0;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "VarByte";
+    }
+
+    @Override
+    public int encode(int[] values, int count, byte[] output, int offset) {
+        for (int i = 0; i < count; i++) {
+            int value = values[i];
+            while ((value & 0xFFFFFF80) != 0) {
+                output[offset++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            output[offset++] = (byte) value;
+        }
+        return offset;
+    }
+
+    @Override
+    public int decode(byte[] input, int offset, int count, int[] output) {
+        for (int i = 0; i < count; i++) {
+            int result = 0, shift = 0;
+            byte b;
+            do {
+                b = input[offset++];
+                result |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            output[i] = result;
+        }
+        return offset;
+    }
+
+    // Number of bytes VarByte needs for a value
+    static int size(int value) {
+        int size = 1;
+        while ((value & 0xFFFFFF80) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,142 @@
+package io;
+
+import compression.VarByte;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads postings written by {@link BinaryRunWriter}.
+ * Only a change of term allocates; the postings themselves are decoded into primitive fields.
+ */
+public class BinaryRunReader implements RunReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final DataInputStream input;
+    private final boolean hasPositions;
+    private int[] positions = new int[16];
+    private byte[] suffix = new byte[64];
+    private String term = null;
+    private int docId;
+    private int termFreq;
+    private boolean inTerm = false;
+
+    public BinaryRunReader(String filePath) throws IOException {
+        this(new FileInputStream(filePath));
+    }
+
+    /**
+     * @param inputStream Stream at the start of a run.
+     * @throws IOException If the flags of the run cannot be read.
+     */
+    public BinaryRunReader(InputStream inputStream) throws IOException {
+        this.input = buffer(inputStream);
+        int flags = input.read();
+        this.hasPositions = flags != -1 && (flags & BinaryRunWriter.HAS_POSITIONS) != 0;
+    }
+
+    /**
+     * @param inputStream Stream at the start of a term of a run, such as an offset from its {@link RunIndex}.
+     * @param hasPositions Whether the run holds positions, see {@link #hasPositions(String)}.
+     */
+    public BinaryRunReader(InputStream inputStream, boolean hasPositions) {
+        this.input = buffer(inputStream);
+        this.hasPositions = hasPositions;
+    }
+
+    private static DataInputStream buffer(InputStream inputStream) {
+        boolean isBuffered = inputStream instanceof BufferedInputStream || inputStream instanceof PrefetchingInputStream;
+        return new DataInputStream(isBuffered ? inputStream : new BufferedInputStream(inputStream, BUFFER_SIZE));
+    }
+
+    /**
+     * Reads whether a run file holds positions from its flags.
+     * @param filePath Path of the run file.
+     * @return true if every posting of the run is followed by its positions.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static boolean hasPositions(String filePath) throws IOException {
+        try (InputStream inputStream = new FileInputStream(filePath)) {
+            int flags = inputStream.read();
+            return flags != -1 && (flags & BinaryRunWriter.HAS_POSITIONS) != 0;
+        }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (inTerm) {
+            int docIdGap = VarByte.decodeVarInt(input);
+            if (docIdGap != 0) {
+                docId += docIdGap;
+                termFreq = VarByte.decodeVarInt(input);
+                readPositions();
+                return true;
+            }
+            inTerm = false;
+        }
+        if (!readTerm()) {
+            return false;
+        }
+        docId = -1 + VarByte.decodeVarInt(input);
+        termFreq = VarByte.decodeVarInt(input);
+        readPositions();
+        inTerm = true;
+        return true;
+    }
+
+    private void readPositions() throws IOException {
+        if (!hasPositions) {
+            return;
+        }
+        if (termFreq > positions.length) {
+            positions = new int[Math.max(termFreq, positions.length * 2)];
+        }
+        int position = 0;
+        for (int i = 0; i < termFreq; i++) {
+            position += VarByte.decodeVarInt(input);
+            positions[i] = position;
+        }
+    }
+
+    // Reads the next term header, returning false at the end of the run
+    private boolean readTerm() throws IOException {
+        int firstByte = input.read();
+        if (firstByte == -1) {
+            return false;
+        }
+        int sharedPrefixLength = firstByte < 0x80 ? firstByte : (firstByte & 0x7F) | (VarByte.decodeVarInt(input) << 7);
+        int suffixLength = VarByte.decodeVarInt(input);
+        if (suffixLength > suffix.length) {
+            suffix = new byte[Math.max(suffixLength, suffix.length * 2)];
+        }
+        input.readFully(suffix, 0, suffixLength);
+        String suffixString = new String(suffix, 0, suffixLength, StandardCharsets.UTF_8);
+        term = sharedPrefixLength == 0 ? suffixString : term.substring(0, sharedPrefixLength).concat(suffixString);
+        return true;
+    }
+
+    @Override
+    public String getTerm() {
+        return term;
+    }
+
+    @Override
+    public int getDocId() {
+        return docId;
+    }
+
+    @Override
+    public int getTermFreq() {
+        return termFreq;
+    }
+
+    @Override
+    public int[] getPositions() {
+        return hasPositions ? positions : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,144 @@
+package io;
+
+import compression.VarByte;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes postings in the binary run format.
+ *
+ * <RUN>
+ * flags               byte, HAS_POSITIONS when every posting is followed by its positions
+ * For every term, in term order:
+ *   sharedPrefixLength  VarByte, characters shared with the previous term
+ *   suffixLength        VarByte, length of the UTF-8 encoded suffix in bytes
+ *   suffix              UTF-8 bytes
+ *   (docIdGap, termFreq)*  VarByte pairs, the gap of the first posting is taken from -1 so every gap is positive,
+ *                       each followed by termFreq VarByte position gaps, the first taken from 0, in a run with positions
+ *   0                   end of the term's postings
+ *
+ * A writer created for a file path also writes a sparse {@link RunIndex} next to the run.
+ */
+public class BinaryRunWriter implements RunWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    public static final int HAS_POSITIONS = 1;
+    // The flags byte in front of the postings
+    public static final int HEADER_SIZE = 1;
+
+    private final CountingOutputStream countingStream;
+    private final DataOutputStream output;
+    private final RunIndex.Writer index;
+    private final boolean hasPositions;
+    private long lastIndexedOffset = -RunIndex.INDEX_INTERVAL;
+    private String currentTerm = null;
+    private int lastDocId;
+
+    public BinaryRunWriter(String filePath) throws IOException {
+        this(filePath, false);
+    }
+
+    public BinaryRunWriter(String filePath, boolean hasPositions) throws IOException {
+        this(new FileOutputStream(filePath), new RunIndex.Writer(filePath), hasPositions);
+    }
+
+    public BinaryRunWriter(OutputStream outputStream, boolean hasPositions) throws IOException {
+        this(outputStream, null, hasPositions);
+    }
+
+    private BinaryRunWriter(OutputStream outputStream, RunIndex.Writer index, boolean hasPositions) throws IOException {
+        this.countingStream = new CountingOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+        this.output = new DataOutputStream(countingStream);
+        this.index = index;
+        this.hasPositions = hasPositions;
+        output.writeByte(hasPositions ? HAS_POSITIONS : 0);
+    }
+
+    @Override
+    public void write(String term, int docId, int termFreq, int[] positions) throws IOException {
+        if (hasPositions == (positions == null)) {
+            throw new IllegalArgumentException(hasPositions ? "Positions are missing for term '" + term + "'"
+                    : "Run holds no positions, but positions were given for term '" + term + "'");
+        }
+        if (!term.equals(currentTerm)) {
+            if (currentTerm != null) {
+                if (term.compareTo(currentTerm) < 0) {
+                    throw new IllegalArgumentException("Terms must be written in sorted order: '" + term + "' after '" + currentTerm + "'");
+                }
+                output.writeByte(0); // End of the previous term
+            }
+            writeTerm(term);
+            currentTerm = term;
+            lastDocId = -1;
+        } else if (docId <= lastDocId) {
+            throw new IllegalArgumentException("Document IDs must be increasing within term '" + term + "'");
+        }
+        VarByte.encodeVarInt(output, docId - lastDocId);
+        VarByte.encodeVarInt(output, termFreq);
+        if (hasPositions) {
+            int lastPosition = 0;
+            for (int i = 0; i < termFreq; i++) {
+                VarByte.encodeVarInt(output, positions[i] - lastPosition);
+                lastPosition = positions[i];
+            }
+        }
+        lastDocId = docId;
+    }
+
+    // Front-codes the term against the previous one, or writes it whole where the run index gets an entry
+    private void writeTerm(String term) throws IOException {
+        int sharedPrefixLength = 0;
+        long offset = countingStream.count;
+        if (index != null && offset - lastIndexedOffset >= RunIndex.INDEX_INTERVAL) {
+            index.add(term, offset);
+            lastIndexedOffset = offset;
+        } else if (currentTerm != null) {
+            int maxLength = Math.min(term.length(), currentTerm.length());
+            while (sharedPrefixLength < maxLength && term.charAt(sharedPrefixLength) == currentTerm.charAt(sharedPrefixLength)) {
+                sharedPrefixLength++;
+            }
+            // Never split a surrogate pair between the prefix and the suffix
+            if (sharedPrefixLength > 0 && Character.isHighSurrogate(term.charAt(sharedPrefixLength - 1))) {
+                sharedPrefixLength--;
+            }
+        }
+        byte[] suffix = term.substring(sharedPrefixLength).getBytes(StandardCharsets.UTF_8);
+        VarByte.encodeVarInt(output, sharedPrefixLength);
+        VarByte.encodeVarInt(output, suffix.length);
+        output.write(suffix);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (output) {
+            if (currentTerm != null) {
+                output.writeByte(0);
+            }
+        } finally {
+            if (index != null) {
+                index.close();
+            }
+        }
+    }
+
+    // Counts the bytes written so far; DataOutputStream.size() stops counting at 2 GB
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
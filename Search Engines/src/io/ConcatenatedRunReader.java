@@ -0,0 +1,66 @@
+package io;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads run files one after the other, such as the partitions written by
+ * {@link SortedFileMerger#mergeSortedFilesByTermRange}, which together form one sorted run.
+ * Only the file being read is open.
+ */
+public class ConcatenatedRunReader implements RunReader {
+    private final List<String> filePaths;
+    private int nextFile = 0;
+    private RunReader current = null;
+
+    /**
+     * @param filePaths Paths of the run files, in the order they are to be read.
+     */
+    public ConcatenatedRunReader(List<String> filePaths) {
+        this.filePaths = filePaths;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (current == null || !current.next()) {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            if (nextFile == filePaths.size()) {
+                return false;
+            }
+            current = new BinaryRunReader(filePaths.get(nextFile++));
+        }
+        return true;
+    }
+
+    @Override
+    public String getTerm() {
+        return current.getTerm();
+    }
+
+    @Override
+    public int getDocId() {
+        return current.getDocId();
+    }
+
+    @Override
+    public int getTermFreq() {
+        return current.getTermFreq();
+    }
+
+    @Override
+    public int[] getPositions() {
+        return current.getPositions();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+        nextFile = filePaths.size();
+    }
+}
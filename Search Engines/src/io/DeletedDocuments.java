@@ -0,0 +1,67 @@
+package io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * Reads and writes the documents of an index marked deleted. Deleted documents keep their postings until the index
+ * is compacted, and are skipped by the lists opened against a document table that carries the set.
+ *
+ * <DELETED DOCUMENTS>  deleted_docs.bin
+ * bits                 bit docId % 8 of byte docId / 8 set for every deleted document, trailing zero bytes dropped
+ *
+ * The file is only ever replaced as a whole, by a rename.
+ */
+public class DeletedDocuments {
+    public static final String FILE_NAME = "deleted_docs.bin";
+
+    /**
+     * Reads the deleted documents of an index.
+     * @param filePath Path of the deleted documents file.
+     * @return The IDs of the deleted documents, empty if the file does not exist.
+     * @throws IOException If the file cannot be read.
+     */
+    public static BitSet read(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            return new BitSet();
+        }
+        return BitSet.valueOf(Files.readAllBytes(path));
+    }
+
+    /**
+     * Marks the documents of a table with any of the given URLs deleted.
+     * @param documents Document table of the index.
+     * @param urls URLs of the documents to delete.
+     * @param deletedDocuments IDs of the deleted documents, updated.
+     * @return Number of documents newly marked deleted.
+     */
+    public static int markDeleted(DocumentTable documents, Set<String> urls, BitSet deletedDocuments) {
+        int markedCount = 0;
+        for (int docId = 0; docId < documents.getDocumentCount(); docId++) {
+            if (!deletedDocuments.get(docId) && urls.contains(documents.getUrl(docId))) {
+                deletedDocuments.set(docId);
+                markedCount++;
+            }
+        }
+        return markedCount;
+    }
+
+    /**
+     * Replaces the deleted documents file of an index.
+     * @param deletedDocuments IDs of the deleted documents.
+     * @param filePath Path of the deleted documents file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(BitSet deletedDocuments, String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        Path temporaryPath = Paths.get(filePath + ".tmp");
+        Files.write(temporaryPath, deletedDocuments.toByteArray());
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
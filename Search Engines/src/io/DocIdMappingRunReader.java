@@ -0,0 +1,76 @@
+package io;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Renumbers the documents of a run through a table of new document IDs, dropping the postings of documents
+ * the table maps to -1. The new IDs must keep the order of the documents they are kept for, so the run stays sorted.
+ * Used to merge runs of separately numbered collections into one numbering, and to purge deleted documents.
+ */
+public class DocIdMappingRunReader implements RunReader {
+    public static final int DROPPED = -1;
+
+    private final RunReader run;
+    private final int[] newDocIds;
+
+    /**
+     * @param run Run to read from.
+     * @param newDocIds New ID of every document of the run, indexed by its ID in the run, or DROPPED.
+     */
+    public DocIdMappingRunReader(RunReader run, int[] newDocIds) {
+        this.run = run;
+        this.newDocIds = newDocIds;
+    }
+
+    /**
+     * Numbers the documents of a collection that are not deleted one after the other from a base ID.
+     * @param documentCount Number of documents of the collection.
+     * @param deletedDocuments IDs of the deleted documents, dropped.
+     * @param baseDocId New ID of the first document kept.
+     * @return The new ID of every document, or DROPPED.
+     */
+    public static int[] compactDocIds(int documentCount, BitSet deletedDocuments, int baseDocId) {
+        int[] newDocIds = new int[documentCount];
+        int nextDocId = baseDocId;
+        for (int docId = 0; docId < documentCount; docId++) {
+            newDocIds[docId] = deletedDocuments.get(docId) ? DROPPED : nextDocId++;
+        }
+        return newDocIds;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (run.next()) {
+            if (newDocIds[run.getDocId()] != DROPPED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getTerm() {
+        return run.getTerm();
+    }
+
+    @Override
+    public int getDocId() {
+        return newDocIds[run.getDocId()];
+    }
+
+    @Override
+    public int getTermFreq() {
+        return run.getTermFreq();
+    }
+
+    @Override
+    public int[] getPositions() {
+        return run.getPositions();
+    }
+
+    @Override
+    public void close() throws IOException {
+        run.close();
+    }
+}
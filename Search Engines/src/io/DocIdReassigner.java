@@ -0,0 +1,523 @@
+package io;
+
+import model.Document;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serial;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reassigns document IDs between parsing and merging, so that similar documents get nearby IDs.
+ * The parser numbers documents in file order; here a new order is computed, by URL or by recursive graph bisection,
+ * and the temporary files of the parser, document_data.ser and the document table are rewritten with the new IDs.
+ * Clustered IDs give smaller docId gaps and denser blocks, so the index built from the rewritten runs is smaller
+ * and skips more blocks at query time. The lexicon and the index are then built from the rewritten runs as usual.
+ */
+public class DocIdReassigner {
+    // Graph bisection stops splitting at partitions of this many documents or fewer
+    private static final int LEAF_SIZE = 32;
+    // Rounds of swapping documents between the two halves of a partition
+    private static final int MAX_ITERATIONS = 20;
+    // Partitions at least this large are bisected on their own fork-join task
+    private static final int PARALLEL_SIZE = 1 << 12;
+    // Terms found in fewer documents hardly affect the size of the index and are left out of graph bisection
+    public static final int DEFAULT_MIN_DOC_FREQUENCY = 16;
+
+    /**
+     * Orders documents by URL, ignoring the scheme so the http and https pages of a site stay together.
+     * Documents with the same URL keep their order.
+     * @param documents Documents whose IDs are their positions in the list.
+     * @return The new ID of every document, indexed by its current ID.
+     */
+    public static int[] orderByUrl(List<Document> documents) {
+        Integer[] order = new Integer[documents.size()];
+        String[] keys = new String[documents.size()];
+        for (int docId = 0; docId < order.length; docId++) {
+            order[docId] = docId;
+            keys[docId] = stripScheme(documents.get(docId).url);
+        }
+        Arrays.sort(order, Comparator.comparing((Integer docId) -> keys[docId]));
+        int[] newDocIds = new int[order.length];
+        for (int newDocId = 0; newDocId < order.length; newDocId++) {
+            newDocIds[order[newDocId]] = newDocId;
+        }
+        return newDocIds;
+    }
+
+    private static String stripScheme(String url) {
+        if (url == null) {
+            return "";
+        }
+        int schemeEnd = url.indexOf("://");
+        return schemeEnd < 0 ? url : url.substring(schemeEnd + 3);
+    }
+
+    /**
+     * Orders documents by recursive graph bisection, starting from the URL order.
+     * Every partition is split in two halves and documents are swapped between the halves while that lowers
+     * the estimated cost of encoding the docId gaps of their terms; both halves are then split in turn.
+     * The terms of every document are held in memory, so only terms with at least minDocFrequency documents are used.
+     * @param tempDirectoryPath Path to the directory containing temporary files.
+     * @param documents Documents whose IDs are their positions in the list.
+     * @param minDocFrequency Fewest documents a term must be found in to be used.
+     * @param threadCount Number of threads bisecting partitions at the same time.
+     * @return The new ID of every document, indexed by its current ID.
+     * @throws IOException If reading the temporary files fails.
+     */
+    public static int[] orderByGraphBisection(String tempDirectoryPath, List<Document> documents, int minDocFrequency,
+                                              int threadCount) throws IOException {
+        ForwardIndex forwardIndex = ForwardIndex.read(tempDirectoryPath, documents.size(), minDocFrequency, threadCount);
+
+        int[] urlOrder = orderByUrl(documents);
+        int[] order = new int[documents.size()];
+        for (int docId = 0; docId < order.length; docId++) {
+            order[urlOrder[docId]] = docId;
+        }
+        // Degrees and partition sizes never exceed the document count
+        double[] log2 = new double[order.length + 2];
+        for (int value = 1; value < log2.length; value++) {
+            log2[value] = Math.log(value) / Math.log(2);
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(threadCount, 1));
+        try {
+            pool.invoke(new Bisection(forwardIndex, log2, order, 0, order.length));
+        } finally {
+            pool.shutdown();
+        }
+
+        int[] newDocIds = new int[order.length];
+        for (int newDocId = 0; newDocId < order.length; newDocId++) {
+            newDocIds[order[newDocId]] = newDocId;
+        }
+        return newDocIds;
+    }
+
+    /**
+     * Computes a new document order and rewrites the temporary files, document_data.ser and the document table with it.
+     * @param tempDirectoryPath Path to the directory containing temporary files.
+     * @param documentDataPath Path of document_data.ser.
+     * @param documentTablePath Path of the document table.
+     * @param useGraphBisection Whether to refine the URL order by recursive graph bisection.
+     * @param threadCount Number of threads used.
+     * @throws IOException If reading document_data.ser or rewriting a temporary file fails; the temporary files are then
+     *                     left in the old order.
+     */
+    public static void reassignDocIds(String tempDirectoryPath, String documentDataPath, String documentTablePath,
+                                      boolean useGraphBisection, int threadCount) throws IOException {
+        List<Document> documents = DocumentSerializer.deserializeDocumentList(documentDataPath);
+        if (documents == null) {
+            throw new IOException("Could not read the documents of " + documentDataPath);
+        }
+        int[] newDocIds = useGraphBisection
+                ? orderByGraphBisection(tempDirectoryPath, documents, DEFAULT_MIN_DOC_FREQUENCY, threadCount)
+                : orderByUrl(documents);
+        rewriteRuns(tempDirectoryPath, newDocIds, threadCount);
+
+        Document[] reordered = new Document[documents.size()];
+        for (Document document : documents) {
+            int newDocId = newDocIds[document.docId];
+            reordered[newDocId] = new Document(newDocId, document.url, document.termCount);
+        }
+        List<Document> reorderedDocuments = Arrays.asList(reordered);
+        DocumentSerializer.serializeDocumentList(new ArrayList<>(reorderedDocuments), documentDataPath);
+        DocumentTable.write(reorderedDocuments, documentTablePath);
+    }
+
+    // Rewrites every temporary file with the new IDs, each on its own task. The temporary files are only replaced once
+    // every rewrite has succeeded, so they never hold runs of two different numberings
+    private static void rewriteRuns(String tempDirectoryPath, int[] newDocIds, int threadCount) throws IOException {
+        List<Path> runFiles = SortedFileMerger.listRunFiles(tempDirectoryPath);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threadCount, 1));
+        try {
+            List<Future<?>> rewrites = new ArrayList<>(runFiles.size());
+            for (Path runFile : runFiles) {
+                rewrites.add(executor.submit(() -> {
+                    rewriteRun(runFile, getRewrittenPath(runFile), newDocIds);
+                    return null;
+                }));
+            }
+            // Every rewrite is waited for, even after one has failed, so none is still written once it is deleted
+            IOException failure = null;
+            for (Future<?> rewrite : rewrites) {
+                try {
+                    waitFor(rewrite);
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                for (Path runFile : runFiles) {
+                    Path rewrittenFile = getRewrittenPath(runFile);
+                    Files.deleteIfExists(rewrittenFile);
+                    Files.deleteIfExists(Path.of(RunIndex.indexPath(rewrittenFile.toString())));
+                }
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (Path runFile : runFiles) {
+            Path rewrittenFile = getRewrittenPath(runFile);
+            Files.move(rewrittenFile, runFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(Path.of(RunIndex.indexPath(rewrittenFile.toString())), Path.of(RunIndex.indexPath(runFile.toString())),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // temp0.run -> temp0.run.reorder, not ending in .run so it is never taken for a temporary file of the parser
+    private static Path getRewrittenPath(Path runFile) {
+        return runFile.resolveSibling(runFile.getFileName() + ".reorder");
+    }
+
+    // Postings of a term are sorted again by their new IDs
+    private static void rewriteRun(Path runFile, Path rewrittenFile, int[] newDocIds) throws IOException {
+        boolean hasPositions = BinaryRunReader.hasPositions(runFile.toString());
+        try (RunReader reader = new BinaryRunReader(runFile.toString());
+             RunWriter writer = new BinaryRunWriter(rewrittenFile.toString(), hasPositions)) {
+            TermPostings postings = new TermPostings(hasPositions);
+            String term = null;
+            while (reader.next()) {
+                if (!reader.getTerm().equals(term)) {
+                    postings.write(writer, term);
+                    term = reader.getTerm();
+                }
+                postings.add(newDocIds[reader.getDocId()], reader.getTermFreq(), reader.getPositions());
+            }
+            postings.write(writer, term);
+        }
+    }
+
+    /**
+     * Postings of one term of a run, collected to be written in the order of their new IDs.
+     * Every posting is kept as its new docId packed with its index, so sorting the packed values orders the postings.
+     */
+    private static class TermPostings {
+        private final boolean hasPositions;
+        private long[] postings = new long[1 << 10];
+        private int[] termFreqs = new int[1 << 10];
+        private int[] positionStarts = new int[1 << 10];
+        private int[] positions = new int[1 << 10];
+        private int[] postingPositions = new int[16];
+        private int count = 0;
+        private int positionCount = 0;
+
+        TermPostings(boolean hasPositions) {
+            this.hasPositions = hasPositions;
+        }
+
+        void add(int newDocId, int termFreq, int[] termPositions) {
+            if (count == postings.length) {
+                postings = Arrays.copyOf(postings, count * 2);
+                termFreqs = Arrays.copyOf(termFreqs, count * 2);
+                positionStarts = Arrays.copyOf(positionStarts, count * 2);
+            }
+            postings[count] = (long) newDocId << 32 | count;
+            termFreqs[count] = termFreq;
+            if (hasPositions) {
+                if (positionCount + termFreq > positions.length) {
+                    positions = Arrays.copyOf(positions, Math.max(positionCount + termFreq, positions.length * 2));
+                }
+                System.arraycopy(termPositions, 0, positions, positionCount, termFreq);
+                positionStarts[count] = positionCount;
+                positionCount += termFreq;
+            }
+            count++;
+        }
+
+        // Writes the postings by new docId and empties the collection
+        void write(RunWriter writer, String term) throws IOException {
+            Arrays.sort(postings, 0, count);
+            for (int i = 0; i < count; i++) {
+                int index = (int) postings[i];
+                int termFreq = termFreqs[index];
+                int[] termPositions = null;
+                if (hasPositions) {
+                    if (termFreq > postingPositions.length) {
+                        postingPositions = new int[Math.max(termFreq, postingPositions.length * 2)];
+                    }
+                    System.arraycopy(positions, positionStarts[index], postingPositions, 0, termFreq);
+                    termPositions = postingPositions;
+                }
+                writer.write(term, (int) (postings[i] >>> 32), termFreq, termPositions);
+            }
+            count = 0;
+            positionCount = 0;
+        }
+    }
+
+    private static void waitFor(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reassigning document IDs was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Terms of every document, in compressed sparse row form: the term IDs of document d are
+     * termIds[documentStarts[d]] up to termIds[documentStarts[d + 1]].
+     */
+    private static class ForwardIndex {
+        final int[] documentStarts;
+        final int[] termIds;
+        final int termCount;
+
+        private ForwardIndex(int[] documentStarts, int[] termIds, int termCount) {
+            this.documentStarts = documentStarts;
+            this.termIds = termIds;
+            this.termCount = termCount;
+        }
+
+        /**
+         * Reads the forward index from the merged temporary files, in two passes: the first counts the terms of every
+         * document, the second fills them in.
+         */
+        static ForwardIndex read(String tempDirectoryPath, int documentCount, int minDocFrequency, int threadCount) throws IOException {
+            int[] documentStarts = new int[documentCount + 1];
+            TermCollector counter = new TermCollector(minDocFrequency, (docIds, count, termId) -> {
+                for (int i = 0; i < count; i++) {
+                    documentStarts[docIds[i] + 1]++;
+                }
+            });
+            SortedFileMerger.mergeSortedFiles(tempDirectoryPath, counter, SortedFileMerger.DEFAULT_MAX_FAN_IN, threadCount,
+                    SortedFileMerger.DEFAULT_READ_BUFFER_BUDGET);
+            counter.close();
+            for (int docId = 0; docId < documentCount; docId++) {
+                documentStarts[docId + 1] += documentStarts[docId];
+            }
+
+            int[] termIds = new int[documentStarts[documentCount]];
+            int[] next = Arrays.copyOf(documentStarts, documentCount);
+            TermCollector filler = new TermCollector(minDocFrequency, (docIds, count, termId) -> {
+                for (int i = 0; i < count; i++) {
+                    termIds[next[docIds[i]]++] = termId;
+                }
+            });
+            SortedFileMerger.mergeSortedFiles(tempDirectoryPath, filler, SortedFileMerger.DEFAULT_MAX_FAN_IN, threadCount,
+                    SortedFileMerger.DEFAULT_READ_BUFFER_BUDGET);
+            filler.close();
+            return new ForwardIndex(documentStarts, termIds, filler.termCount);
+        }
+    }
+
+    /**
+     * Receives the merged postings and hands over the documents of every term found in enough of them,
+     * numbering those terms in term order.
+     */
+    private static class TermCollector implements RunWriter {
+        interface TermConsumer {
+            void accept(int[] docIds, int count, int termId);
+        }
+
+        private final int minDocFrequency;
+        private final TermConsumer consumer;
+        private String currentTerm = null;
+        private int[] docIds = new int[1 << 10];
+        private int count = 0;
+        private int termCount = 0;
+
+        TermCollector(int minDocFrequency, TermConsumer consumer) {
+            this.minDocFrequency = minDocFrequency;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void write(String term, int docId, int termFreq, int[] positions) {
+            if (!term.equals(currentTerm)) {
+                finishTerm();
+                currentTerm = term;
+            }
+            if (count == docIds.length) {
+                docIds = Arrays.copyOf(docIds, count * 2);
+            }
+            docIds[count++] = docId;
+        }
+
+        private void finishTerm() {
+            if (count >= minDocFrequency) {
+                consumer.accept(docIds, count, termCount++);
+            }
+            count = 0;
+        }
+
+        @Override
+        public void close() {
+            finishTerm();
+        }
+    }
+
+    /**
+     * Bisects the documents order[from] up to order[to], then both halves in turn.
+     */
+    private static class Bisection extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // Degrees of the terms in the two halves, per thread; only the entries of the partition's terms are set
+        private static final ThreadLocal<int[][]> DEGREES = new ThreadLocal<>();
+
+        private final ForwardIndex forwardIndex;
+        private final double[] log2;
+        private final int[] order;
+        private final int from;
+        private final int to;
+
+        Bisection(ForwardIndex forwardIndex, double[] log2, int[] order, int from, int to) {
+            this.forwardIndex = forwardIndex;
+            this.log2 = log2;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            bisect(middle);
+            Bisection left = new Bisection(forwardIndex, log2, order, from, middle);
+            Bisection right = new Bisection(forwardIndex, log2, order, middle, to);
+            if (to - from >= PARALLEL_SIZE) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+        }
+
+        private void bisect(int middle) {
+            int[][] degrees = DEGREES.get();
+            if (degrees == null) {
+                degrees = new int[][]{new int[forwardIndex.termCount], new int[forwardIndex.termCount]};
+                DEGREES.set(degrees);
+            }
+            int[] leftDegrees = degrees[0], rightDegrees = degrees[1];
+            addDegrees(leftDegrees, from, middle, 1);
+            addDegrees(rightDegrees, middle, to, 1);
+
+            double logLeftSize = log2[middle - from], logRightSize = log2[to - middle];
+            long[] leftGains = new long[middle - from];
+            long[] rightGains = new long[to - middle];
+            for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+                computeGains(leftGains, from, leftDegrees, rightDegrees, logLeftSize, logRightSize);
+                computeGains(rightGains, middle, rightDegrees, leftDegrees, logRightSize, logLeftSize);
+                Arrays.sort(leftGains);
+                Arrays.sort(rightGains);
+
+                // Swap the documents that gain most from moving while the pair together still gains
+                int swapCount = 0;
+                for (int i = 0; i < leftGains.length && i < rightGains.length; i++) {
+                    if (getGain(leftGains[i]) + getGain(rightGains[i]) <= 0) {
+                        break;
+                    }
+                    int leftPosition = from + (int) leftGains[i];
+                    int rightPosition = middle + (int) rightGains[i];
+                    moveDocument(order[leftPosition], leftDegrees, rightDegrees);
+                    moveDocument(order[rightPosition], rightDegrees, leftDegrees);
+                    int document = order[leftPosition];
+                    order[leftPosition] = order[rightPosition];
+                    order[rightPosition] = document;
+                    swapCount++;
+                }
+                if (swapCount == 0) {
+                    break;
+                }
+            }
+            addDegrees(leftDegrees, from, middle, -1);
+            addDegrees(rightDegrees, middle, to, -1);
+        }
+
+        private void addDegrees(int[] termDegrees, int start, int end, int delta) {
+            for (int position = start; position < end; position++) {
+                int document = order[position];
+                for (int i = forwardIndex.documentStarts[document]; i < forwardIndex.documentStarts[document + 1]; i++) {
+                    termDegrees[forwardIndex.termIds[i]] += delta;
+                }
+            }
+        }
+
+        private void moveDocument(int document, int[] fromDegrees, int[] toDegrees) {
+            for (int i = forwardIndex.documentStarts[document]; i < forwardIndex.documentStarts[document + 1]; i++) {
+                fromDegrees[forwardIndex.termIds[i]]--;
+                toDegrees[forwardIndex.termIds[i]]++;
+            }
+        }
+
+        /**
+         * Computes how much moving each document of a half to the other half lowers the cost, packed with its position
+         * in the half so that sorting the packed values orders the documents by descending gain.
+         */
+        private void computeGains(long[] gains, int start, int[] ownDegrees, int[] otherDegrees,
+                                  double logOwnSize, double logOtherSize) {
+            for (int position = 0; position < gains.length; position++) {
+                int document = order[start + position];
+                double gain = 0d;
+                for (int i = forwardIndex.documentStarts[document]; i < forwardIndex.documentStarts[document + 1]; i++) {
+                    int own = ownDegrees[forwardIndex.termIds[i]], other = otherDegrees[forwardIndex.termIds[i]];
+                    gain += cost(own, other, logOwnSize, logOtherSize) - cost(own - 1, other + 1, logOwnSize, logOtherSize);
+                }
+                gains[position] = (long) toSortableInt((float) -gain) << 32 | position;
+            }
+        }
+
+        /**
+         * Estimated bits to encode the docId gaps of a term with ownDegree documents in a half of 2^logOwnSize documents
+         * and otherDegree documents in the other half.
+         */
+        private double cost(int ownDegree, int otherDegree, double logOwnSize, double logOtherSize) {
+            return ownDegree * (logOwnSize - log2[ownDegree + 1]) + otherDegree * (logOtherSize - log2[otherDegree + 1]);
+        }
+
+        // Maps a float onto an int with the same order
+        private static int toSortableInt(float value) {
+            int bits = Float.floatToIntBits(value);
+            return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+        }
+
+        private static float getGain(long packedGain) {
+            int bits = (int) (packedGain >> 32);
+            return -Float.intBitsToFloat(bits ^ ((bits >> 31) & 0x7FFFFFFF));
+        }
+    }
+
+    // 1.5. DocumentParser -> DocIdReassigner -> InvertedIndexBuilder
+    public static void main(String[] args) {
+        String tempDirectoryPath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/temp/";
+        String dataFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_data.ser";
+        String documentTablePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_table.bin";
+
+        // Graph bisection shrinks the index further than URL order, but holds the terms of every document in memory
+        boolean useGraphBisection = args.length > 0 && args[0].equalsIgnoreCase("bisection");
+
+        long startTime = System.currentTimeMillis();
+        try {
+            reassignDocIds(tempDirectoryPath, dataFilePath, documentTablePath, useGraphBisection,
+                    Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        System.out.println("Reassigning document IDs completed in: " + Util.calculateAndFormatDuration(startTime, System.currentTimeMillis()));
+    }
+}
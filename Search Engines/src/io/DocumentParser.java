@@ -1,11 +1,20 @@
 package io;
 import model.Document;
-import model.Posting;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 public class DocumentParser {
     /**
@@ -18,12 +27,26 @@ public class DocumentParser {
      * </DOC>
      */
 
+    // Share of the maximum heap used for posting buffers when no memory budget is given
+    private static final double DEFAULT_MEMORY_BUDGET_FRACTION = 0.5;
+    // Byte ranges handed out per worker thread in the parallel parse
+    private static final int RANGES_PER_THREAD = 4;
+    // Decompressed bytes handed from the read-ahead thread to the tokenizer at a time, and how many may be queued
+    private static final int READ_AHEAD_CHUNK_SIZE = 4 << 20;
+    private static final int READ_AHEAD_QUEUE_DEPTH = 4;
+
     private static List<Document> documentList = new ArrayList<>();
     private static int docId = -1;
     public static List<Document> getdocumentList() {
         return documentList;
     }
 
+    // Forgets the documents parsed so far, so the next parse numbers its documents from 0 again
+    public static void reset() {
+        documentList = new ArrayList<>();
+        docId = -1;
+    }
+
     public static class IndexWrapper {
         public int value;
 
@@ -41,16 +64,255 @@ public class DocumentParser {
 
 
     public static void parseDocuments(String sourceFilePath, String temporaryFilePath, String metadataFilePath) throws IOException {
-        // Initialization
-        int termCount = 0;
-        String currentDocumentURL = null;
-        List<Posting> postings = new ArrayList<>();
-        boolean isProcessingText = false;
-        boolean isFirstLineInText = false;
-        Map<String, Integer> termFrequencyMap = new HashMap<>();
-
-        int tempFileCount = 0;
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(sourceFilePath), StandardCharsets.UTF_8))) {
+        parseDocuments(sourceFilePath, temporaryFilePath, metadataFilePath, 1, defaultMemoryBudget());
+    }
+
+    public static void parseDocuments(String sourceFilePath, String temporaryFilePath, String metadataFilePath, int threadCount) throws IOException {
+        parseDocuments(sourceFilePath, temporaryFilePath, metadataFilePath, threadCount, defaultMemoryBudget());
+    }
+
+    private static void parseSequentially(String sourceFilePath, String temporaryFilePath, String metadataFilePath, long memoryBudget,
+                                          boolean recordPositions) throws IOException {
+        // Half of the budget for the buffer being filled, half for the one being spilled
+        long bufferBudget = memoryBudget / 2;
+        AtomicInteger tempFileCount = new AtomicInteger();
+        try (RunSpiller spiller = createSpiller(temporaryFilePath, tempFileCount, recordPositions);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(openSource(sourceFilePath), StandardCharsets.UTF_8))) {
+            RangeParser parser = new RangeParser(docId + 1, spiller, bufferBudget);
+            parser.parse(reader);
+            // After completing the reading of the file, spill the remaining postings
+            parser.finish();
+            documentList.addAll(parser.documents);
+            docId = parser.docId;
+            saveDocumentList(documentList, metadataFilePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Parses the source file on a pool of worker threads.
+     * The file is split into byte ranges that start on a {@code <DOC>} line, and every worker
+     * tokenizes its own range and writes its own sorted temporary files.
+     * Document IDs are assigned from the prefix sum of the document counts of the preceding ranges,
+     * so the IDs and the document data file are the same as with {@link #parseDocuments(String, String, String)}.
+     * <p>
+     * Postings are spilled once their estimated size reaches the worker's share of the memory budget.
+     * Every worker sorts and writes a full buffer on a background thread while it keeps parsing into a second one,
+     * so each worker gets two buffers of {@code memoryBudget / threadCount / 2} bytes.
+     * <p>
+     * A gzip-compressed source ({@code .gz}) cannot be split into byte ranges and is parsed on a single worker,
+     * with decompression running ahead on its own thread.
+     *
+     * @param sourceFilePath    path of the source data file
+     * @param temporaryFilePath path to store temporary files
+     * @param metadataFilePath  path to store document metadata
+     * @param threadCount       number of worker threads
+     * @param memoryBudget      heap in bytes that all posting buffers together may use
+     */
+    public static void parseDocuments(String sourceFilePath, String temporaryFilePath, String metadataFilePath, int threadCount, long memoryBudget) throws IOException {
+        parseDocuments(sourceFilePath, temporaryFilePath, metadataFilePath, threadCount, memoryBudget, false);
+    }
+
+    /**
+     * Parses the source file as {@link #parseDocuments(String, String, String, int, long)} does, optionally keeping
+     * the position of every term in its document, counted in terms from 0, in the temporary files.
+     *
+     * @param sourceFilePath    path of the source data file
+     * @param temporaryFilePath path to store temporary files
+     * @param metadataFilePath  path to store document metadata
+     * @param threadCount       number of worker threads
+     * @param memoryBudget      heap in bytes that all posting buffers together may use
+     * @param recordPositions   whether the temporary files hold positions, for a positional index
+     */
+    public static void parseDocuments(String sourceFilePath, String temporaryFilePath, String metadataFilePath, int threadCount,
+                                      long memoryBudget, boolean recordPositions) throws IOException {
+        if (threadCount <= 1 || isCompressed(sourceFilePath)) {
+            parseSequentially(sourceFilePath, temporaryFilePath, metadataFilePath, memoryBudget, recordPositions);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try (FileChannel channel = FileChannel.open(Paths.get(sourceFilePath), StandardOpenOption.READ)) {
+            // More ranges than threads so that a slow range does not hold back the whole pool
+            long[] boundaries = splitIntoRanges(channel, threadCount * RANGES_PER_THREAD);
+            int rangeCount = boundaries.length - 1;
+
+            // Pass 1: count the documents of every range to fix the first docId of each range
+            List<Future<Integer>> counts = new ArrayList<>(rangeCount);
+            for (int i = 0; i < rangeCount; i++) {
+                long start = boundaries[i], end = boundaries[i + 1];
+                counts.add(executor.submit(() -> {
+                    RangeParser counter = new RangeParser(0, null, 0);
+                    try (BufferedReader reader = openRange(channel, start, end)) {
+                        counter.count(reader);
+                    }
+                    return counter.docId + 1;
+                }));
+            }
+            int[] firstDocIds = new int[rangeCount];
+            int nextDocId = docId + 1;
+            for (int i = 0; i < rangeCount; i++) {
+                firstDocIds[i] = nextDocId;
+                nextDocId += waitFor(counts.get(i));
+            }
+
+            // Pass 2: tokenize every range, each worker spilling its own sorted runs
+            AtomicInteger tempFileCount = new AtomicInteger();
+            long bufferBudget = memoryBudget / threadCount / 2;
+            List<Future<RangeParser>> parsers = new ArrayList<>(rangeCount);
+            for (int i = 0; i < rangeCount; i++) {
+                long start = boundaries[i], end = boundaries[i + 1];
+                int firstDocId = firstDocIds[i];
+                parsers.add(executor.submit(() -> {
+                    try (RunSpiller spiller = createSpiller(temporaryFilePath, tempFileCount, recordPositions);
+                         BufferedReader reader = openRange(channel, start, end)) {
+                        RangeParser parser = new RangeParser(firstDocId, spiller, bufferBudget);
+                        parser.parse(reader);
+                        parser.finish();
+                        return parser;
+                    }
+                }));
+            }
+            // Concatenate the per-range documents in file order
+            for (Future<RangeParser> future : parsers) {
+                RangeParser parser = waitFor(future);
+                documentList.addAll(parser.documents);
+                docId = parser.docId;
+            }
+            saveDocumentList(documentList, metadataFilePath);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits the file into byte ranges whose starts fall on a line beginning with {@code <DOC>}.
+     *
+     * @param channel    channel of the source data file
+     * @param rangeCount number of ranges to aim for
+     * @return Sorted range boundaries, starting with 0 and ending with the file size.
+     */
+    private static long[] splitIntoRanges(FileChannel channel, int rangeCount) throws IOException {
+        long fileSize = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        for (int i = 1; i < rangeCount; i++) {
+            long boundary = findDocumentStart(channel, fileSize * i / rangeCount);
+            if (boundary > boundaries.get(boundaries.size() - 1) && boundary < fileSize) {
+                boundaries.add(boundary);
+            }
+        }
+        boundaries.add(fileSize);
+        return boundaries.stream().mapToLong(l -> l).toArray();
+    }
+
+    // Returns the offset of the first "<DOC>" line starting after the given position, or the file size
+    private static long findDocumentStart(FileChannel channel, long position) throws IOException {
+        byte[] pattern = "\n<DOC>".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        int matched = 0;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == pattern[matched]) {
+                    matched++;
+                } else {
+                    matched = b == pattern[0] ? 1 : 0;
+                }
+                if (matched == pattern.length) {
+                    // Position of the '<' right after the line feed
+                    return position + i - pattern.length + 2;
+                }
+            }
+            position += read;
+        }
+    }
+
+    private static boolean isCompressed(String sourceFilePath) {
+        return sourceFilePath.endsWith(".gz");
+    }
+
+    /**
+     * Opens the source data file.
+     * A gzip file, including one made of several concatenated members, is decompressed on a read-ahead thread
+     * that hands large chunks to the tokenizer through a bounded queue.
+     *
+     * @param sourceFilePath path of the source data file
+     * @return Stream of the uncompressed source bytes.
+     */
+    private static InputStream openSource(String sourceFilePath) throws IOException {
+        if (!isCompressed(sourceFilePath)) {
+            return new FileInputStream(sourceFilePath);
+        }
+        // GZIPInputStream continues with the next member when one ends
+        InputStream gzipStream = new GZIPInputStream(new FileInputStream(sourceFilePath), 1 << 16);
+        return new ReadAheadInputStream(gzipStream, READ_AHEAD_CHUNK_SIZE, READ_AHEAD_QUEUE_DEPTH);
+    }
+
+    private static long defaultMemoryBudget() {
+        return (long) (Runtime.getRuntime().maxMemory() * DEFAULT_MEMORY_BUDGET_FRACTION);
+    }
+
+    // Spills each full buffer to the next temporary file
+    private static RunSpiller createSpiller(String temporaryFilePath, AtomicInteger tempFileCount, boolean recordPositions) {
+        return new RunSpiller(buffer -> writePostingsToTempFile(buffer, temporaryFilePath + "temp" + tempFileCount.getAndIncrement() + ".run"),
+                recordPositions);
+    }
+
+    private static BufferedReader openRange(FileChannel channel, long start, long end) {
+        return new BufferedReader(new InputStreamReader(new RangeInputStream(channel, start, end), StandardCharsets.UTF_8));
+    }
+
+    private static <T> T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parsing was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Parses a sequence of lines holding whole documents.
+     * Keeps the per-document state, the documents seen so far and the postings buffer of one worker.
+     */
+    private static class RangeParser {
+        private final RunSpiller spiller;
+        private final long bufferBudget;
+        private final List<Document> documents = new ArrayList<>();
+        private PostingBuffer postings;
+        private final Tokenizer tokenizer = new Tokenizer();
+        private final Tokenizer.TermConsumer termCounter = (term, length) -> postings.addTerm(term, length);
+        private int docId;
+        private int termCount = 0;
+        private String currentDocumentURL = null;
+        private boolean isProcessingText = false;
+        private boolean isFirstLineInText = false;
+
+        /**
+         * @param firstDocId   ID given to the first document of the range
+         * @param spiller      spiller writing the full posting buffers, null when only counting documents
+         * @param bufferBudget estimated size in bytes of a posting buffer that triggers a spill
+         */
+        RangeParser(int firstDocId, RunSpiller spiller, long bufferBudget) {
+            this.docId = firstDocId - 1;
+            this.spiller = spiller;
+            this.bufferBudget = bufferBudget;
+            this.postings = spiller == null ? null : spiller.firstBuffer();
+        }
+
+        void parse(BufferedReader reader) throws IOException {
             String line;
             while ((line = reader.readLine()) != null) {
                 // Read Document
@@ -63,17 +325,12 @@ public class DocumentParser {
                 if (line.startsWith("</TEXT>")) {
                     isProcessingText = false;
 
-                    for (Map.Entry<String, Integer> entry : termFrequencyMap.entrySet()) {
-                        postings.add(new Posting(entry.getKey(), docId, entry.getValue()));
-                    }
-                    termFrequencyMap = new HashMap<>();
+                    postings.endDocument(docId);
 
-                    if (postings.size() > 10000000) {
-                        Collections.sort(postings);
-                        writePostingsToTempFile(postings, temporaryFilePath + "temp" + tempFileCount++ + ".txt");
-                        postings.clear();
+                    if (postings.estimatedBytes() >= bufferBudget) {
+                        postings = spiller.spill(postings);
                     }
-                    documentList.add(new Document(docId, currentDocumentURL, termCount));
+                    documents.add(new Document(docId, currentDocumentURL, termCount));
                     termCount = 0;
                     currentDocumentURL = null;
                     continue;
@@ -88,35 +345,105 @@ public class DocumentParser {
 
                 // Term extraction
                 if (isProcessingText) {
-                    termCount += tokenizeAndCount(line, termFrequencyMap);
+                    termCount += tokenizer.tokenize(line, termCounter);
+                }
+            }
+        }
+
+        // Follows the same state transitions as parse() without tokenizing, only advancing docId
+        void count(BufferedReader reader) throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("<TEXT>")) {
+                    isProcessingText = true;
+                    isFirstLineInText = true;
+                } else if (line.startsWith("</TEXT>")) {
+                    isProcessingText = false;
+                } else if (isProcessingText && isFirstLineInText) {
+                    docId++;
+                    isFirstLineInText = false;
                 }
             }
-            saveDocumentList(documentList, metadataFilePath);
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        // After completing the reading of the file, check if there are any remaining postings
-        if (!postings.isEmpty()) {
-            Collections.sort(postings);
-            writePostingsToTempFile(postings, temporaryFilePath + "temp" + tempFileCount + ".txt");
-            postings.clear();
+
+        // Spills the remaining postings and waits until all runs of the range are written; the buffers are released,
+        // since a finished parser is kept until every range is done
+        void finish() throws IOException {
+            if (!postings.isEmpty()) {
+                spiller.spill(postings);
+            }
+            postings = null;
+            spiller.close();
         }
     }
 
+    /**
+     * Input stream over a byte range of a file channel.
+     * Uses positional reads, so several ranges of one channel can be read concurrently.
+     */
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private long position;
+        private final long end;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            buffer.limit(0);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            if (position >= end) {
+                return false;
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return false;
+            }
+            position += read;
+            buffer.flip();
+            return true;
+        }
+    }
 
     /**
-     * Writes the postings buffer to a temporary file.
-     * Each posting is written as a separate line.
+     * Sorts the postings buffer and writes it to a temporary file in the binary run format.
      *
-     * @param postingsBuffer The list of postings to write.
+     * @param postingsBuffer The postings to write.
      * @param filePath       The path of the temporary file.
      */
-    // Automatically closes resources at the end of the statement (BufferedWriter, ObjectOutputStream)
-    private static void writePostingsToTempFile(List<Posting> postingsBuffer, String filePath) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath), StandardCharsets.UTF_8))) {
-            for (Posting posting : postingsBuffer) {
-                writer.write(posting.toString());
-                writer.newLine();
+    // Automatically closes resources at the end of the statement (RunWriter, ObjectOutputStream)
+    private static void writePostingsToTempFile(PostingBuffer postingsBuffer, String filePath) throws IOException {
+        int[] order = postingsBuffer.sort();
+        try (RunWriter writer = new BinaryRunWriter(filePath, postingsBuffer.isRecordingPositions())) {
+            for (int index : order) {
+                writer.write(postingsBuffer.getTerm(index), postingsBuffer.getDocId(index), postingsBuffer.getTermFreq(index),
+                        postingsBuffer.getPositions(index));
             }
         }
 
@@ -135,53 +462,31 @@ public class DocumentParser {
         }
     }
 
-    private static int tokenizeAndCount(String line, Map<String, Integer> termFrequencyMap) {
-        line = removeHtmlTags(line);
-
-        String[] splits = line.split("[\\s.]");
-        int wordCount = 0;
-
-        for (String split : splits) {
-            split = cleanToken(split);
-            if (!split.isEmpty()) {
-                termFrequencyMap.put(split, termFrequencyMap.getOrDefault(split, 0) + 1);
-                wordCount++;
-            }
-        }
-
-        return wordCount;
-    }
-
-    private static String removeHtmlTags(String content) {
-        return content.replaceAll("<[^>]*>", "");
-    }
-
-    private static String cleanToken(String token) {
-        token = token.trim();
-        token = token.replaceAll("^\\P{L}+", "").replaceAll("\\P{L}+$", "");
-        return token.toLowerCase(Locale.ROOT);
-    }
-
     /**
      * document_data.ser
      * Document ID: 1, URL: http://example.com/page1, Term Count: 150
      * Document ID: 2, URL: http://example.com/page2, Term Count: 200
      *
-     * temp*.txt
-     * term1 docId1 termFreq1
-     * term1 docId2 termFreq2
-     * term2 docId1 termFreq3
+     * temp*.run (binary, see BinaryRunWriter)
+     * term1 [docId1 termFreq1 (positions)] [docId2 termFreq2 (positions)]
+     * term2 [docId1 termFreq3 (positions)]
      */
 
     public static void main(String[] args) throws IOException {
         String srcFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/msmarco-docs.trec";
         String tempFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/temp/";
         String dataFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_data.ser";
+        String documentTablePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_table.bin";
+
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        // Positions are only needed for phrase queries, and make the temporary files several times larger
+        boolean recordPositions = args.length > 0 && args[0].equals("positions");
 
         // Start timer
         long startTime = System.currentTimeMillis();
 
-        parseDocuments(srcFilePath, tempFilePath, dataFilePath);
+        parseDocuments(srcFilePath, tempFilePath, dataFilePath, threadCount, defaultMemoryBudget(), recordPositions);
+        DocumentTable.write(documentList, documentTablePath);
 
         // End timer and calculate elapsed time
         long endTime = System.currentTimeMillis();
@@ -0,0 +1,203 @@
+package io;
+
+import compression.VarByte;
+import model.Document;
+
+import java.io.*;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Column-oriented, memory-mapped table of document lengths and URLs.
+ *
+ * <DOCUMENT TABLE>
+ * documentCount    int
+ * totalTermCount   long
+ * termCounts       int per document, indexed by docId
+ * urlBlob          blocks of URLS_PER_BLOCK URLs, each URL front-coded against the previous one in its block
+ *                  as VarByte shared prefix length, VarByte suffix length and the UTF-8 suffix bytes
+ * blockOffsets     long per block, file offset of the block
+ * indexOffset      long, file offset of blockOffsets
+ *
+ * Opening the table only maps the file, and document lengths are read straight from the mapping.
+ */
+public class DocumentTable {
+    private static final int URLS_PER_BLOCK = 16;
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final IntBuffer termCounts;
+    private final int documentCount;
+    private final long totalTermCount;
+    private final long indexOffset;
+    // Documents marked deleted but not yet compacted away, null if there are none
+    private BitSet deletedDocuments;
+
+    private DocumentTable(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.documentCount = buffer.getInt(0);
+        this.totalTermCount = buffer.getLong(Integer.BYTES);
+        this.termCounts = buffer.duplicate().position(HEADER_SIZE).slice().asIntBuffer().limit(documentCount);
+        this.indexOffset = buffer.getLong(buffer.capacity() - Long.BYTES);
+    }
+
+    /**
+     * Memory-maps a document table file.
+     * @param filePath Path of the file.
+     * @return The document table.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public static DocumentTable open(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Document table is too large to map: " + filePath);
+            }
+            return new DocumentTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public BitSet getDeletedDocuments() {
+        return deletedDocuments;
+    }
+
+    public void setDeletedDocuments(BitSet deletedDocuments) {
+        this.deletedDocuments = deletedDocuments == null || deletedDocuments.isEmpty() ? null : deletedDocuments;
+    }
+
+    public boolean isDeleted(int docId) {
+        return deletedDocuments != null && deletedDocuments.get(docId);
+    }
+
+    public int getTermCount(int docId) {
+        return termCounts.get(docId);
+    }
+
+    public double getAverageTermCount() {
+        return documentCount == 0 ? 0.0 : (double) totalTermCount / documentCount;
+    }
+
+    /**
+     * Decodes the URL of a document from its block.
+     * @param docId ID of the document.
+     * @return The URL.
+     */
+    public String getUrl(int docId) {
+        int block = docId / URLS_PER_BLOCK;
+        int position = (int) buffer.getLong((int) indexOffset + block * Long.BYTES);
+        byte[] url = new byte[128];
+        int urlLength = 0;
+        for (int i = block * URLS_PER_BLOCK; i <= docId; i++) {
+            int sharedPrefixLength = readVarInt(position);
+            position += varIntSize(sharedPrefixLength);
+            int suffixLength = readVarInt(position);
+            position += varIntSize(suffixLength);
+            urlLength = sharedPrefixLength + suffixLength;
+            if (urlLength > url.length) {
+                url = Arrays.copyOf(url, Math.max(urlLength, url.length * 2));
+            }
+            buffer.get(position, url, sharedPrefixLength, suffixLength);
+            position += suffixLength;
+        }
+        return new String(url, 0, urlLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds a Document for display purposes.
+     * @param docId ID of the document.
+     * @return Document with the URL and term count of the given document.
+     */
+    public Document getDocument(int docId) {
+        return new Document(docId, getUrl(docId), getTermCount(docId));
+    }
+
+    // Absolute-position VarByte decoding, so concurrent readers do not share a buffer position
+    private int readVarInt(int position) {
+        int result = 0, shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return result;
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & 0xFFFFFF80) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the documents, ordered by docId, to a document table file.
+     * @param documents Documents whose IDs are their positions in the list.
+     * @param filePath Path of the file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void write(List<Document> documents, String filePath) throws IOException {
+        int documentCount = documents.size();
+        long totalTermCount = 0;
+        for (Document document : documents) {
+            totalTermCount += document.getTermCount();
+        }
+
+        int blockCount = (documentCount + URLS_PER_BLOCK - 1) / URLS_PER_BLOCK;
+        long[] blockOffsets = new long[blockCount];
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16))) {
+            output.writeInt(documentCount);
+            output.writeLong(totalTermCount);
+            for (Document document : documents) {
+                output.writeInt(document.getTermCount());
+            }
+
+            byte[] previousUrl = new byte[0];
+            for (int docId = 0; docId < documentCount; docId++) {
+                String urlString = documents.get(docId).url;
+                byte[] url = urlString == null ? new byte[0] : urlString.getBytes(StandardCharsets.UTF_8);
+                int sharedPrefixLength = 0;
+                if (docId % URLS_PER_BLOCK == 0) {
+                    blockOffsets[docId / URLS_PER_BLOCK] = output.size();
+                } else {
+                    int maxLength = Math.min(url.length, previousUrl.length);
+                    while (sharedPrefixLength < maxLength && url[sharedPrefixLength] == previousUrl[sharedPrefixLength]) {
+                        sharedPrefixLength++;
+                    }
+                }
+                VarByte.encodeVarInt(output, sharedPrefixLength);
+                VarByte.encodeVarInt(output, url.length - sharedPrefixLength);
+                output.write(url, sharedPrefixLength, url.length - sharedPrefixLength);
+                previousUrl = url;
+            }
+
+            long indexOffset = output.size();
+            for (long blockOffset : blockOffsets) {
+                output.writeLong(blockOffset);
+            }
+            output.writeLong(indexOffset);
+        }
+    }
+
+    // Converts an existing document_data.ser into a document table
+    public static void main(String[] args) throws IOException {
+        String dataFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_data.ser";
+        String documentTablePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/document_table.bin";
+
+        long startTime = System.currentTimeMillis();
+        write(DocumentSerializer.deserializeDocumentList(dataFilePath), documentTablePath);
+        System.out.println("Document table written in: " + Util.calculateAndFormatDuration(startTime, System.currentTimeMillis()));
+    }
+}
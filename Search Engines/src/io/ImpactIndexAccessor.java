@@ -0,0 +1,81 @@
+package io;
+
+import compression.PostingBlockCompressor;
+import compression.VarByte;
+import model.ImpactSegment;
+import model.Lexicon;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the impact-ordered index written by {@link ImpactListWriter}.
+ */
+public class ImpactIndexAccessor {
+    // Bytes read when a list is opened, enough for the segment entries of nearly every list
+    private static final int OPEN_READ_SIZE = 1 << 10;
+
+    // Reads the score that impacts were quantized against
+    public static double readMaxScore(RandomAccessFile impactFile) throws IOException {
+        impactFile.seek(0);
+        return impactFile.readDouble();
+    }
+
+    // Opens the impact-ordered list of a term, returning its segments by descending impact; empty if the term has none
+    public static List<ImpactSegment> openSegments(String term, Map<String, Lexicon> lexiconMap, RandomAccessFile impactFile) throws IOException {
+        long listOffset = lexiconMap.get(term).getImpactOffset();
+        List<ImpactSegment> segments = new ArrayList<>();
+        if (listOffset == 0) {
+            return segments;
+        }
+        byte[] headerBytes = new byte[(int) Math.min(OPEN_READ_SIZE, impactFile.length() - listOffset)];
+        impactFile.seek(listOffset);
+        impactFile.readFully(headerBytes);
+
+        ByteBuffer header = ByteBuffer.wrap(headerBytes);
+        int headerLength = VarByte.decodeVarInt(header);
+        int segmentsStart = header.position() + headerLength;
+        if (segmentsStart > headerBytes.length) {
+            int read = headerBytes.length;
+            headerBytes = Arrays.copyOf(headerBytes, segmentsStart);
+            impactFile.readFully(headerBytes, read, segmentsStart - read);
+            header = ByteBuffer.wrap(headerBytes).position(header.position());
+        }
+
+        int segmentCount = VarByte.decodeVarInt(header);
+        long segmentOffset = listOffset + segmentsStart;
+        for (int segment = 0; segment < segmentCount; segment++) {
+            int impact = header.get() & 0xFF;
+            int postingCount = VarByte.decodeVarInt(header);
+            int codec = header.get();
+            int byteSize = VarByte.decodeVarInt(header);
+            segments.add(new ImpactSegment(impact, postingCount, codec, segmentOffset, byteSize));
+            segmentOffset += byteSize;
+        }
+        return segments;
+    }
+
+    /**
+     * Reads and decodes the document IDs of a segment.
+     * @param segment The segment.
+     * @param impactFile The impact index file.
+     * @param docIds Array to decode into, replaced by a larger one if it is too small.
+     * @return The array holding the document IDs.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static int[] readSegment(ImpactSegment segment, RandomAccessFile impactFile, int[] docIds) throws IOException {
+        byte[] bytes = new byte[segment.getByteSize()];
+        impactFile.seek(segment.getOffset());
+        impactFile.readFully(bytes);
+        if (docIds.length < segment.getPostingCount()) {
+            docIds = new int[segment.getPostingCount()];
+        }
+        PostingBlockCompressor.decompressDocIds(bytes, 0, segment.getPostingCount(), segment.getCodec(), 0, docIds);
+        return docIds;
+    }
+}
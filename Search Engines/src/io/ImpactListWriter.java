@@ -0,0 +1,112 @@
+package io;
+
+import compression.PostingBlockCompressor;
+import compression.VarByte;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the impact-ordered index: for every term, its postings grouped into segments of equal quantized BM25 impact,
+ * the segments ordered by descending impact, so a query can visit the highest impacts of all its terms first.
+ *
+ * <IMPACT INDEX>
+ * maxScore         double, the BM25 score impacts are quantized against
+ * lists            one per term that has a posting with a positive score
+ *
+ * <IMPACT LIST>
+ * headerLength     VarByte, bytes from segmentCount up to the first segment
+ * segmentCount     VarByte
+ * segmentEntries   per segment: impact byte, VarByte posting count, codec byte, VarByte size of the segment
+ * segments         per segment: gaps between its ascending docIds, the first taken from 0
+ */
+public class ImpactListWriter {
+    public static final int MAX_IMPACT = 255;
+
+    private final IndexWriter indexFile;
+
+    /**
+     * Writes the header of the impact index.
+     * @param indexFile Writer of the impact index file, at its start.
+     * @param maxScore Upper bound of the BM25 score of any posting.
+     * @throws IOException If an I/O error occurs.
+     */
+    public ImpactListWriter(IndexWriter indexFile, double maxScore) throws IOException {
+        this.indexFile = indexFile;
+        indexFile.writeLong(Double.doubleToLongBits(maxScore));
+    }
+
+    /**
+     * Quantizes a BM25 score to an impact. Positive scores map linearly onto 1 to MAX_IMPACT, and scores that are
+     * not positive, those of terms found in more than half of the documents, to 0.
+     * @param score BM25 score of a posting.
+     * @param maxScore Upper bound of the BM25 score of any posting.
+     * @return The impact.
+     */
+    public static int quantize(double score, double maxScore) {
+        if (score <= 0) {
+            return 0;
+        }
+        return Math.min(MAX_IMPACT, 1 + (int) (score / maxScore * (MAX_IMPACT - 1)));
+    }
+
+    /**
+     * Writes the impact-ordered list of a term. Postings with impact 0 are left out.
+     * @param docIds Document IDs of the term's postings, in ascending order.
+     * @param impacts Impact of each posting.
+     * @param count Number of postings.
+     * @return Position of the list in the file, or 0 if no posting has a positive impact and nothing was written.
+     * @throws IOException If an I/O error occurs.
+     */
+    public long writeList(int[] docIds, int[] impacts, int count) throws IOException {
+        // Counting sort by descending impact, stable so docIds stay ascending within a segment
+        int[] segmentStarts = new int[MAX_IMPACT + 2];
+        for (int i = 0; i < count; i++) {
+            segmentStarts[MAX_IMPACT - impacts[i] + 1]++;
+        }
+        for (int i = 1; i < segmentStarts.length; i++) {
+            segmentStarts[i] += segmentStarts[i - 1];
+        }
+        if (segmentStarts[MAX_IMPACT] == 0) {
+            return 0;
+        }
+        int[] sortedDocIds = new int[count];
+        int[] next = segmentStarts.clone();
+        for (int i = 0; i < count; i++) {
+            sortedDocIds[next[MAX_IMPACT - impacts[i]]++] = docIds[i];
+        }
+
+        ByteArrayOutputStream segmentEntries = new ByteArrayOutputStream();
+        ByteArrayOutputStream segments = new ByteArrayOutputStream();
+        DataOutputStream segmentEntriesOutput = new DataOutputStream(segmentEntries);
+        int segmentCount = 0;
+        for (int impact = MAX_IMPACT; impact > 0; impact--) {
+            int start = segmentStarts[MAX_IMPACT - impact];
+            int postingCount = segmentStarts[MAX_IMPACT - impact + 1] - start;
+            if (postingCount == 0) {
+                continue;
+            }
+            int[] segmentDocIds = new int[postingCount];
+            System.arraycopy(sortedDocIds, start, segmentDocIds, 0, postingCount);
+            int segmentStart = segments.size();
+            int codec = PostingBlockCompressor.compressDocIds(segmentDocIds, postingCount, 0, segments);
+
+            segmentEntriesOutput.writeByte(impact);
+            VarByte.encodeVarInt(segmentEntriesOutput, postingCount);
+            segmentEntriesOutput.writeByte(codec);
+            VarByte.encodeVarInt(segmentEntriesOutput, segments.size() - segmentStart);
+            segmentCount++;
+        }
+
+        ByteArrayOutputStream counts = new ByteArrayOutputStream();
+        VarByte.encodeVarInt(new DataOutputStream(counts), segmentCount);
+
+        long listOffset = indexFile.getFilePointer();
+        VarByte.encodeVarInt(indexFile, counts.size() + segmentEntries.size());
+        indexFile.write(counts.toByteArray(), 0, counts.size());
+        indexFile.write(segmentEntries.toByteArray(), 0, segmentEntries.size());
+        indexFile.write(segments.toByteArray(), 0, segments.size());
+        return listOffset;
+    }
+}
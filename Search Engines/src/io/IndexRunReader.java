@@ -0,0 +1,116 @@
+package io;
+
+import model.Lexicon;
+import model.PositionList;
+import model.TermIndexList;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Reads the postings of an inverted index back as a run, list by list in the term order of its lexicon,
+ * which is the order the lists were written in.
+ * Positions are read back too when the reader is given the positions file of the index, and are null otherwise.
+ */
+public class IndexRunReader implements RunReader {
+    private final RandomAccessFile indexFile;
+    private final RandomAccessFile positionsFile;
+    private final Iterator<Map.Entry<String, Lexicon>> entries;
+    private Map.Entry<String, Lexicon> entry;
+    private TermIndexList termList;
+    private PositionList positionList;
+    private int[] positions = new int[16];
+    private int docId = -1;
+
+    /**
+     * @param indexFilePath Path of the inverted index file.
+     * @param lexiconMap Lexicon of the index, iterating in term order as a lexicon read from a file does.
+     * @throws IOException If the index cannot be opened.
+     */
+    public IndexRunReader(String indexFilePath, Map<String, Lexicon> lexiconMap) throws IOException {
+        this(indexFilePath, lexiconMap, null);
+    }
+
+    /**
+     * @param indexFilePath Path of the inverted index file.
+     * @param lexiconMap Lexicon of the index, iterating in term order as a lexicon read from a file does.
+     * @param positionsFilePath Path of the positions file of the index, or null to read no positions.
+     * @throws IOException If the index cannot be opened.
+     */
+    public IndexRunReader(String indexFilePath, Map<String, Lexicon> lexiconMap, String positionsFilePath) throws IOException {
+        this.indexFile = new RandomAccessFile(indexFilePath, "r");
+        this.positionsFile = positionsFilePath == null ? null : new RandomAccessFile(positionsFilePath, "r");
+        this.entries = lexiconMap.entrySet().iterator();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (termList != null) {
+            docId = InvertedIndexAccessor.nextGEQ(docId + 1, termList, indexFile);
+        }
+        while (termList == null || docId == -1) {
+            if (!entries.hasNext()) {
+                termList = null;
+                return false;
+            }
+            entry = entries.next();
+            termList = InvertedIndexAccessor.openList(entry.getKey(), entry.getValue(), indexFile);
+            if (positionsFile != null) {
+                positionList = PositionIndexAccessor.openList(entry.getKey(), entry.getValue(), positionsFile);
+            }
+            docId = InvertedIndexAccessor.nextGEQ(0, termList, indexFile);
+        }
+        return true;
+    }
+
+    @Override
+    public String getTerm() {
+        return entry.getKey();
+    }
+
+    @Override
+    public int getDocId() {
+        return docId;
+    }
+
+    @Override
+    public int getTermFreq() {
+        try {
+            return InvertedIndexAccessor.getFreq(termList, indexFile);
+        } catch (IOException e) {
+            // The block was read when the reader moved to the posting, so decoding its frequencies reads nothing
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int[] getPositions() {
+        if (positionsFile == null) {
+            return null;
+        }
+        try {
+            positions = PositionIndexAccessor.getPositions(positionList, termList, indexFile, positionsFile, positions);
+            return positions;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lexicon entry of the term of the current posting.
+     */
+    public Lexicon getLexicon() {
+        return entry.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        indexFile.close();
+        if (positionsFile != null) {
+            positionsFile.close();
+        }
+    }
+}
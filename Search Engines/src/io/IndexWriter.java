@@ -0,0 +1,89 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential writer for index files.
+ * Bytes are encoded into a large direct buffer that is written through a FileChannel when it fills up,
+ * instead of one system call per byte as with RandomAccessFile. The writer tracks its own file pointer,
+ * so offsets of what is written can be taken at any time without flushing.
+ * Multi-byte values are written big-endian, the same as RandomAccessFile and DataOutputStream.
+ */
+public class IndexWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long flushedBytes = 0;
+
+    /**
+     * Creates the file, or truncates it if it exists.
+     * @param filePath Path of the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public IndexWriter(String filePath) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * @return Offset in the file at which the next byte will be written.
+     */
+    public long getFilePointer() {
+        return flushedBytes + buffer.position();
+    }
+
+    public void writeByte(int value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) value);
+    }
+
+    public void writeInt(int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            flush();
+        }
+        buffer.putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        if (buffer.remaining() < Long.BYTES) {
+            flush();
+        }
+        buffer.putLong(value);
+    }
+
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    // Writes the buffered bytes to the file
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushedBytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            flush();
+        }
+    }
+}
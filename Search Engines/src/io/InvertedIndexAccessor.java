@@ -1,90 +1,272 @@
 package io;
-import compression.MetadataCompressor;
-import model.Document;
+import compression.VarByte;
 import model.TermIndexList;
 import model.Lexicon;
-import model.Metadata;
 import compression.PostingBlockCompressor;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class InvertedIndexAccessor {
+    // Bytes read when a list is opened, enough for the whole of most lists and for the header of all but the longest
+    private static final int OPEN_READ_SIZE = 1 << 12;
 
-    // Opens a term index list for a given term
-    public static TermIndexList openList(String term, Map<String, Lexicon> lexiconMap, RandomAccessFile metadataFile) throws IOException {
-        Lexicon lexicon = lexiconMap.get(term);
-        metadataFile.seek(lexicon.getMetadataPosition());
-        Metadata metadata = MetadataCompressor.decompressMetadata(metadataFile);
-        return new TermIndexList(term, metadata);
+    // Opens a term index list that skips the documents the table marks deleted
+    public static TermIndexList openList(String term, Map<String, Lexicon> lexiconMap, RandomAccessFile indexFile, DocumentTable documents) throws IOException {
+        TermIndexList termList = openList(term, lexiconMap, indexFile);
+        termList.setDeletedDocuments(documents.getDeletedDocuments());
+        return termList;
     }
 
+    // Opens a term index list for a given term, reading its header from the start of the list
+    public static TermIndexList openList(String term, Map<String, Lexicon> lexiconMap, RandomAccessFile indexFile) throws IOException {
+        return openList(term, lexiconMap.get(term), indexFile);
+    }
+
+    // Opens the term index list of a lexicon entry already looked up
+    public static TermIndexList openList(String term, Lexicon lexicon, RandomAccessFile indexFile) throws IOException {
+        if (lexicon.isInline()) {
+            return openInlineList(term, lexicon);
+        }
+        long listLength = lexicon.getEndOffset() - lexicon.getStartOffset();
+        byte[] listBytes = new byte[(int) Math.min(listLength, OPEN_READ_SIZE)];
+        indexFile.seek(lexicon.getStartOffset());
+        indexFile.readFully(listBytes);
+
+        ByteBuffer header = ByteBuffer.wrap(listBytes);
+        int headerLength = VarByte.decodeVarInt(header);
+        int blocksStart = header.position() + headerLength;
+        if (blocksStart > listBytes.length) {
+            // The header of a very long list continues right after the first read
+            int read = listBytes.length;
+            listBytes = Arrays.copyOf(listBytes, blocksStart);
+            indexFile.readFully(listBytes, read, blocksStart - read);
+            header = ByteBuffer.wrap(listBytes).position(header.position());
+        }
+        int blockCount = VarByte.decodeVarInt(header);
+        int postingCount = VarByte.decodeVarInt(header);
+
+        int groupCount = (blockCount + PostingListWriter.SKIP_INTERVAL - 1) / PostingListWriter.SKIP_INTERVAL;
+        int[] groupLastDocIds = new int[groupCount];
+        int[] groupEntryOffsets = new int[groupCount];
+        long[] groupBlockOffsets = new long[groupCount];
+        int lastDocId = 0, entryOffset = 0;
+        long blockOffset = blocksStart;
+        for (int group = 0; group < groupCount; group++) {
+            lastDocId += VarByte.decodeVarInt(header);
+            groupLastDocIds[group] = lastDocId;
+            groupEntryOffsets[group] = entryOffset;
+            groupBlockOffsets[group] = blockOffset;
+            entryOffset += VarByte.decodeVarInt(header);
+            blockOffset += VarByte.decodeVarLong(header);
+        }
+        // Block entries follow the skip table
+        for (int group = 0; group < groupCount; group++) {
+            groupEntryOffsets[group] += header.position();
+        }
+        return new TermIndexList(term, lexicon, lexicon.getStartOffset(), listBytes, blockCount, postingCount,
+                PostingListWriter.BLOCK_SIZE, groupLastDocIds, groupEntryOffsets, groupBlockOffsets);
+    }
+
+    // Opens a list kept in its lexicon entry as a list of one block, already decoded and positioned at its first posting
+    private static TermIndexList openInlineList(String term, Lexicon lexicon) {
+        int[] docIds = lexicon.getInlineDocIds();
+        int lastDocId = docIds[docIds.length - 1];
+        TermIndexList termList = new TermIndexList(term, lexicon, 0, new byte[0], 1, docIds.length, docIds.length,
+                new int[]{lastDocId}, new int[1], new long[1]);
+        termList.isGroupDecoded[0] = true;
+        termList.lastDocIds[0] = lastDocId;
+        termList.blockMaxScores[0] = lexicon.getMaxScore();
+        System.arraycopy(docIds, 0, termList.getDocIds(), 0, docIds.length);
+        System.arraycopy(lexicon.getInlineTermFreqs(), 0, termList.getTermFreqs(), 0, docIds.length);
+        termList.setCurrentBlock(0, null, 0);
+        termList.setTermFreqDecoded(true);
+        return termList;
+    }
+
+    // Decodes the block entries of a skip group from the header of the list
+    private static void decodeGroup(int group, TermIndexList termList) {
+        ByteBuffer entries = ByteBuffer.wrap(termList.getListBytes()).position(termList.groupEntryOffsets[group]);
+        int firstBlock = group * PostingListWriter.SKIP_INTERVAL;
+        int lastBlock = Math.min(firstBlock + PostingListWriter.SKIP_INTERVAL, termList.getBlockCount());
+        int lastDocId = group == 0 ? 0 : termList.groupLastDocIds[group - 1];
+        long blockOffset = termList.groupBlockOffsets[group];
+        for (int block = firstBlock; block < lastBlock; block++) {
+            lastDocId += VarByte.decodeVarInt(entries);
+            termList.lastDocIds[block] = lastDocId;
+            termList.docIdBlockSizes[block] = VarByte.decodeVarInt(entries);
+            termList.termFreqBlockSizes[block] = VarByte.decodeVarInt(entries);
+            termList.blockCodecs[block] = entries.get();
+            termList.blockMaxScores[block] = entries.getFloat();
+            termList.blockOffsets[block] = blockOffset;
+            blockOffset += termList.docIdBlockSizes[block] + termList.termFreqBlockSizes[block];
+        }
+        termList.isGroupDecoded[group] = true;
+    }
+
+    // Finds the first block whose last docId is at least the target, by binary search over the skip table and then the group
+    private static int findBlock(int targetDocID, TermIndexList termList) {
+        int group = lowerBound(termList.groupLastDocIds, 0, termList.groupLastDocIds.length, targetDocID);
+        if (!termList.isGroupDecoded[group]) {
+            decodeGroup(group, termList);
+        }
+        int firstBlock = group * PostingListWriter.SKIP_INTERVAL;
+        int lastBlock = Math.min(firstBlock + PostingListWriter.SKIP_INTERVAL, termList.getBlockCount());
+        return lowerBound(termList.lastDocIds, firstBlock, lastBlock, targetDocID);
+    }
+
+    /**
+     * Finds the block that holds the next document with docId >= targetDocID without decoding it, so its maximum score
+     * and last docId can be looked at before deciding to move the list there. The list itself does not move.
+     * @return Index of the block, or -1 if no document of the list is at least the target.
+     */
+    public static int nextShallow(int targetDocID, TermIndexList termList) {
+        if (targetDocID > termList.getMaxDocId()) {
+            return -1;
+        }
+        // Usually the target is in the block the list is positioned in
+        int block = termList.getCurrentBlockIndex();
+        if (block >= 0 && termList.lastDocIds[block] >= targetDocID && getPreviousLastDocId(block, termList) < targetDocID) {
+            return block;
+        }
+        return findBlock(targetDocID, termList);
+    }
 
-    // Finds the next document with docId >= targetDocID in the posting list
+    // Index of the first value in [from, to) that is at least the target, the values being sorted
+    private static int lowerBound(int[] values, int from, int to, int target) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (values[middle] < target) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    // Last docId before a block, from which the block's docId gaps start
+    private static int getPreviousLastDocId(int block, TermIndexList termList) {
+        if (block == 0) {
+            return 0;
+        }
+        if (block % PostingListWriter.SKIP_INTERVAL == 0) {
+            return termList.groupLastDocIds[block / PostingListWriter.SKIP_INTERVAL - 1];
+        }
+        return termList.lastDocIds[block - 1];
+    }
+
+    // Positions the list at the start of a block and decodes its docIds; the block is read from the file unless it came with the header
+    private static void loadBlock(int block, TermIndexList termList, RandomAccessFile indexFile) throws IOException {
+        long offset = termList.blockOffsets[block];
+        int size = termList.docIdBlockSizes[block] + termList.termFreqBlockSizes[block];
+        byte[] bytes = termList.getListBytes();
+        int start = (int) offset;
+        if (offset + size > bytes.length) {
+            bytes = termList.getBlockBytes();
+            if (bytes == null || bytes == termList.getListBytes() || bytes.length < size) {
+                bytes = new byte[Math.max(size, 1 << 10)];
+            }
+            indexFile.seek(termList.getStartOffset() + offset);
+            indexFile.readFully(bytes, 0, size);
+            start = 0;
+        }
+        PostingBlockCompressor.decompressDocIds(bytes, start, termList.getBlockPostingCount(block),
+                PostingBlockCompressor.getDocIdCodec(termList.blockCodecs[block]), getPreviousLastDocId(block, termList),
+                termList.getDocIds());
+        termList.setCurrentBlock(block, bytes, start);
+    }
+
+    // Finds the next document with docId >= targetDocID in the posting list; targets may not decrease between calls on a list
     public static int nextGEQ(int targetDocID, TermIndexList termList, RandomAccessFile indexFile) throws IOException {
-        Metadata metadata = termList.getMetadata();
-        int[] lastDocIds = metadata.getLastDocIds();
+        int docId = nextPosting(targetDocID, termList, indexFile);
+        BitSet deletedDocuments = termList.getDeletedDocuments();
+        if (deletedDocuments != null) {
+            // Deleted documents are stepped over before the caller sees them, so they are never scored
+            while (docId != -1 && deletedDocuments.get(docId)) {
+                docId = nextPosting(deletedDocuments.nextClearBit(docId), termList, indexFile);
+            }
+        }
+        return docId;
+    }
 
-        int blockIndex = 0, indexInBlock = 0;
-        while (lastDocIds[blockIndex] < targetDocID) {
-            blockIndex++;
-            if (blockIndex >= lastDocIds.length) {
+    // Moves the list to its first posting with a docId of at least the target, deleted or not
+    private static int nextPosting(int targetDocID, TermIndexList termList, RandomAccessFile indexFile) throws IOException {
+        int blockIndex = termList.getCurrentBlockIndex();
+        int indexInBlock = termList.getPositionInCurrentBlock();
+        if (blockIndex < 0 || termList.lastDocIds[blockIndex] < targetDocID) {
+            if (targetDocID > termList.getMaxDocId()) {
                 return -1; // Indicates no such element exists
             }
+            loadBlock(findBlock(targetDocID, termList), termList, indexFile);
+            indexInBlock = 0;
         }
 
-        indexFile.seek(metadata.getDocIdBlockStarts()[blockIndex]);
-        List<Integer> docIdBlock = PostingBlockCompressor.decompressDocIds(indexFile, metadata.getDocIdBlockSizes()[blockIndex]);
-
-        while (docIdBlock.get(indexInBlock) < targetDocID) {
+        int[] docIdBlock = termList.getDocIds();
+        while (docIdBlock[indexInBlock] < targetDocID) {
             indexInBlock++;
         }
-        termList.setCurrentBlockIndex(blockIndex);
         termList.setPositionInCurrentBlock(indexInBlock);
-        return docIdBlock.get(indexInBlock);
+        return docIdBlock[indexInBlock];
     }
 
     // Gets the frequency of the current posting in the list
     public static int getFreq(TermIndexList termList, RandomAccessFile indexFile) throws IOException {
-        Metadata metadata = termList.getMetadata();
-
-        indexFile.seek(metadata.getTermFreqBlockStarts()[termList.getCurrentBlockIndex()]);
-        List<Integer> freqBlock = PostingBlockCompressor.decompressTermFreqs(indexFile, metadata.getTermFreqBlockSizes()[termList.getCurrentBlockIndex()]);
-
-        return freqBlock.get(termList.getPositionInCurrentBlock());
+        if (!termList.isTermFreqDecoded()) {
+            int block = termList.getCurrentBlockIndex();
+            PostingBlockCompressor.decompressTermFreqs(termList.getBlockBytes(), termList.getBlockBytesOffset() + termList.docIdBlockSizes[block],
+                    termList.getBlockPostingCount(block), PostingBlockCompressor.getTermFreqCodec(termList.blockCodecs[block]),
+                    termList.getTermFreqs());
+            termList.setTermFreqDecoded(true);
+        }
+        return termList.getTermFreqs()[termList.getPositionInCurrentBlock()];
     }
 
     // Calculates the impact score of the current posting in the term list
-    public static double calculateTermImpactScore(TermIndexList termList, List<Document> pageInfo, RandomAccessFile indexFile, Lexicon lexicon, int totalDocCount, double k1, double b, double averageDocLength, int documentId) throws IOException {
+    public static double calculateTermImpactScore(TermIndexList termList, DocumentTable pageInfo, RandomAccessFile indexFile, Lexicon lexicon, int totalDocCount, double k1, double b, double averageDocLength, int documentId) throws IOException {
         int termFrequencyInDoc = getFreq(termList, indexFile);
         return getScore(termFrequencyInDoc, pageInfo, lexicon, totalDocCount, k1, b, averageDocLength, documentId);
     }
 
     // Calculates the impact score given the term frequency in a document
-    public static double getScore(int termFreqInDoc, List<Document> pageInfo, Lexicon lexicon, int totalDocCount, double k1, double b, double averageDocLength, int documentId) {
-        int docFrequency = lexicon.getDocumentFrequency();
-        int docLength = pageInfo.get(documentId).getTermCount();
-        double idf = Math.log((totalDocCount - docFrequency + 0.5) / (docFrequency + 0.5));
-        double termFreqFactor = ((k1 + 1) * termFreqInDoc) / (k1 * ((1 - b) + b * (docLength / averageDocLength)) + termFreqInDoc);
-        return idf * termFreqFactor;
+    public static double getScore(int termFreqInDoc, DocumentTable pageInfo, Lexicon lexicon, int totalDocCount, double k1, double b, double averageDocLength, int documentId) {
+        double idf = getIdf(lexicon.getDocumentFrequency(), totalDocCount);
+        return idf * getTermFreqFactor(termFreqInDoc, pageInfo.getTermCount(documentId), k1, b, averageDocLength);
+    }
+
+    // The idf part of the score, shared by every posting of a term
+    public static double getIdf(int docFrequency, int totalDocCount) {
+        return Math.log((totalDocCount - docFrequency + 0.5) / (docFrequency + 0.5));
+    }
+
+    // The term frequency part of the score
+    public static double getTermFreqFactor(int termFreqInDoc, int docLength, double k1, double b, double averageDocLength) {
+        return ((k1 + 1) * termFreqInDoc) / (k1 * ((1 - b) + b * (docLength / averageDocLength)) + termFreqInDoc);
     }
 
 
     // Updates a score table with the scores of documents based on their term frequencies
-    public static void updateScoreTable(Map<Integer, Double> scoreTable, TermIndexList termList, RandomAccessFile indexFile, List<Document> pageInfo, Lexicon lexicon, int totalDocCount, double k1, double b, double averageDocLength) throws IOException {
-        Metadata metadata = termList.getMetadata();
-        List<Integer> documentIdBlock, frequencyBlock;
-
-        for (int blockIdx = 0; blockIdx < metadata.getLastDocIds().length; blockIdx++) {
-            indexFile.seek(metadata.getDocIdBlockStarts()[blockIdx]);
-            documentIdBlock = PostingBlockCompressor.decompressDocIds(indexFile, metadata.getDocIdBlockSizes()[blockIdx]);
-            indexFile.seek(metadata.getTermFreqBlockStarts()[blockIdx]);
-            frequencyBlock = PostingBlockCompressor.decompressTermFreqs(indexFile, metadata.getTermFreqBlockSizes()[blockIdx]);
-
-            for (int idxInBlock = 0; idxInBlock < documentIdBlock.size(); idxInBlock++) {
-                int docId = documentIdBlock.get(idxInBlock);
-                int freq = frequencyBlock.get(idxInBlock);
-                double score = calculateTermImpactScore(termList, pageInfo, indexFile, lexicon, totalDocCount, k1, b, averageDocLength, docId);
+    public static void updateScoreTable(Map<Integer, Double> scoreTable, TermIndexList termList, RandomAccessFile indexFile, DocumentTable pageInfo, Lexicon lexicon, int totalDocCount, double k1, double b, double averageDocLength) throws IOException {
+        for (int blockIdx = 0; blockIdx < termList.getBlockCount(); blockIdx++) {
+            int group = blockIdx / PostingListWriter.SKIP_INTERVAL;
+            if (!termList.isGroupDecoded[group]) {
+                decodeGroup(group, termList);
+            }
+            // An inline list is loaded from the start
+            if (termList.getCurrentBlockIndex() != blockIdx) {
+                loadBlock(blockIdx, termList, indexFile);
+            }
+            int[] documentIdBlock = termList.getDocIds();
+
+            for (int idxInBlock = 0; idxInBlock < termList.getBlockPostingCount(blockIdx); idxInBlock++) {
+                termList.setPositionInCurrentBlock(idxInBlock);
+                int docId = documentIdBlock[idxInBlock];
+                if (termList.getDeletedDocuments() != null && termList.getDeletedDocuments().get(docId)) {
+                    continue;
+                }
+                int freq = getFreq(termList, indexFile);
+                double score = getScore(freq, pageInfo, lexicon, totalDocCount, k1, b, averageDocLength, docId);
                 scoreTable.put(docId, scoreTable.getOrDefault(docId, 0.0) + score);
             }
         }
@@ -3,33 +3,41 @@ package io;
 import model.Lexicon;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 public class LexiconFileHandler {
 
     /**
-     * Writes a lexicon map to a file.
+     * Writes a lexicon map to a file, sorting its terms; builders write their lexicons term by term through a
+     * {@link LexiconWriter} instead.
      * @param lexicon Map to write.
      * @param filePath Path of the file.
      */
     public static void writeLexicon(Map<String, Lexicon> lexicon, String filePath) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            oos.writeObject(lexicon);
+        List<String> terms = new ArrayList<>(lexicon.keySet());
+        terms.sort(null);
+        try (LexiconWriter writer = new LexiconWriter(filePath)) {
+            for (String term : terms) {
+                writer.add(term, lexicon.get(term));
+            }
+            writer.finish();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Reads a lexicon map from a file.
+     * Memory-maps a lexicon file.
      * @param filePath Path of the file to read from.
-     * @return The read lexicon map.
+     * @return The lexicon, looked up in the file itself.
      */
     public static Map<String, Lexicon> readLexicon(String filePath) {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filePath))) {
-            return (Map<String, Lexicon>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+        try {
+            return MappedLexicon.open(filePath);
+        } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,141 @@
+package io;
+
+import compression.VarByte;
+import model.Lexicon;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Writes a lexicon file term by term, in term order, as the lists of the terms are finished, so the lexicon of an
+ * index is never held in memory. The file is read by {@link MappedLexicon}.
+ *
+ * <LEXICON>
+ * blocks               TERMS_PER_BLOCK entries each, terms ascending as compared by {@link String#compareTo}
+ *   term               VarByte shared prefix length with the previous term of the block (0 for the first),
+ *                      VarByte suffix length and the UTF-8 suffix bytes
+ *   blockCount         VarByte
+ *   documentFrequency  VarByte
+ *   maxScore           float
+ *   impactOffset       VarByte
+ *   positionsOffset    VarByte
+ *   inlineCount        VarByte, number of postings kept in the entry, 0 for a list in the inverted index
+ *   startOffset        VarByte, position of the inverted list               (inlineCount 0 only)
+ *   listLength         VarByte, endOffset - startOffset                      (inlineCount 0 only)
+ *   postings           per inline posting: VarByte docId gap, the first from 0, and VarByte term frequency
+ * blockOffsets         long per block, file offset of the block
+ * termCount            int
+ * indexOffset          long, file offset of blockOffsets
+ *
+ * The file is written next to its final path and only takes its place once {@link #finish()} completes it,
+ * so a lexicon file is always whole.
+ */
+public class LexiconWriter implements Closeable {
+    public static final int TERMS_PER_BLOCK = 16;
+
+    private final String filePath;
+    private final String temporaryPath;
+    private final IndexWriter output;
+    private long[] blockOffsets = new long[1 << 10];
+    private int termCount = 0;
+    private String previousTerm;
+    private byte[] previousTermBytes = new byte[0];
+    private boolean isFinished = false;
+
+    /**
+     * @param filePath Path of the lexicon file.
+     * @throws IOException If the file cannot be created.
+     */
+    public LexiconWriter(String filePath) throws IOException {
+        this.filePath = filePath;
+        this.temporaryPath = filePath + ".tmp";
+        this.output = new IndexWriter(temporaryPath);
+    }
+
+    /**
+     * Appends the entry of a term.
+     * @param term The term, greater than every term added before it.
+     * @param lexicon Entry of the term.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void add(String term, Lexicon lexicon) throws IOException {
+        if (previousTerm != null && term.compareTo(previousTerm) <= 0) {
+            throw new IllegalArgumentException("Lexicon terms out of order: " + term + " after " + previousTerm);
+        }
+        byte[] termBytes = term.getBytes(StandardCharsets.UTF_8);
+        int sharedPrefixLength = 0;
+        if (termCount % TERMS_PER_BLOCK == 0) {
+            int block = termCount / TERMS_PER_BLOCK;
+            if (block == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+            }
+            blockOffsets[block] = output.getFilePointer();
+        } else {
+            int maxLength = Math.min(termBytes.length, previousTermBytes.length);
+            while (sharedPrefixLength < maxLength && termBytes[sharedPrefixLength] == previousTermBytes[sharedPrefixLength]) {
+                sharedPrefixLength++;
+            }
+        }
+        VarByte.encodeVarInt(output, sharedPrefixLength);
+        VarByte.encodeVarInt(output, termBytes.length - sharedPrefixLength);
+        output.write(termBytes, sharedPrefixLength, termBytes.length - sharedPrefixLength);
+
+        VarByte.encodeVarInt(output, lexicon.getBlockCount());
+        VarByte.encodeVarInt(output, lexicon.getDocumentFrequency());
+        output.writeInt(Float.floatToIntBits(lexicon.getMaxScore()));
+        VarByte.encodeVarLong(output, lexicon.getImpactOffset());
+        VarByte.encodeVarLong(output, lexicon.getPositionsOffset());
+        if (lexicon.isInline()) {
+            int[] docIds = lexicon.getInlineDocIds();
+            int[] termFreqs = lexicon.getInlineTermFreqs();
+            VarByte.encodeVarInt(output, docIds.length);
+            int previousDocId = 0;
+            for (int i = 0; i < docIds.length; i++) {
+                VarByte.encodeVarInt(output, docIds[i] - previousDocId);
+                VarByte.encodeVarInt(output, termFreqs[i]);
+                previousDocId = docIds[i];
+            }
+        } else {
+            VarByte.encodeVarInt(output, 0);
+            VarByte.encodeVarLong(output, lexicon.getStartOffset());
+            VarByte.encodeVarLong(output, lexicon.getEndOffset() - lexicon.getStartOffset());
+        }
+
+        previousTerm = term;
+        previousTermBytes = termBytes;
+        termCount++;
+    }
+
+    /**
+     * Writes the block offsets and puts the file in place of any lexicon at its path.
+     * @throws IOException If the file cannot be completed.
+     */
+    public void finish() throws IOException {
+        long indexOffset = output.getFilePointer();
+        int blockCount = (termCount + TERMS_PER_BLOCK - 1) / TERMS_PER_BLOCK;
+        for (int block = 0; block < blockCount; block++) {
+            output.writeLong(blockOffsets[block]);
+        }
+        output.writeInt(termCount);
+        output.writeLong(indexOffset);
+        output.close();
+        isFinished = true;
+        Files.move(Paths.get(temporaryPath), Paths.get(filePath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Discards the file if it was not finished.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isFinished) {
+            output.close();
+            Files.deleteIfExists(Paths.get(temporaryPath));
+        }
+    }
+}
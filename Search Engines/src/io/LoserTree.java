@@ -0,0 +1,149 @@
+package io;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * K-way merge of sorted runs with a tournament tree of losers.
+ * The current posting of every run is kept decoded in per-run slots. Internal nodes 1..k-1 hold the run that
+ * lost the match at that node, and leaves k..2k-1 stand for the runs, so replacing the winner replays one
+ * leaf-to-root path with about log2(k) comparisons and no allocation.
+ * The merged postings are exposed as a {@link RunReader}.
+ */
+public class LoserTree implements RunReader {
+    private final RunReader[] runs;
+    private final int runCount;
+    private final int[] losers;
+    private final String[] terms;
+    private final int[] docIds;
+    private final int[] termFreqs;
+    private final boolean[] exhausted;
+    private int winner;
+    private boolean started = false;
+    private String term = null;
+
+    /**
+     * @param runs Runs to merge, each sorted by term and then by document ID.
+     * @throws IOException If reading the first posting of a run fails.
+     */
+    public LoserTree(List<? extends RunReader> runs) throws IOException {
+        this.runs = runs.toArray(new RunReader[0]);
+        this.runCount = this.runs.length;
+        this.losers = new int[Math.max(runCount, 1)];
+        this.terms = new String[runCount];
+        this.docIds = new int[runCount];
+        this.termFreqs = new int[runCount];
+        this.exhausted = new boolean[runCount];
+        for (int run = 0; run < runCount; run++) {
+            load(run);
+        }
+        this.winner = runCount == 0 ? -1 : build(1);
+    }
+
+    // Plays the matches of the subtree below a node and returns its winner
+    private int build(int node) {
+        if (node >= runCount) {
+            return node - runCount;
+        }
+        int left = build(2 * node);
+        int right = build(2 * node + 1);
+        if (precedes(left, right)) {
+            losers[node] = right;
+            return left;
+        }
+        losers[node] = left;
+        return right;
+    }
+
+    // Replays the path from the leaf of a run to the root after its slot changed
+    private void replay(int run) {
+        for (int node = (run + runCount) >> 1; node >= 1; node >>= 1) {
+            if (precedes(losers[node], run)) {
+                int loser = losers[node];
+                losers[node] = run;
+                run = loser;
+            }
+        }
+        winner = run;
+    }
+
+    // Orders runs by their current term and document ID, exhausted runs last
+    private boolean precedes(int a, int b) {
+        if (exhausted[a]) return false;
+        if (exhausted[b]) return true;
+        if (terms[a] != terms[b]) {
+            int comparison = terms[a].compareTo(terms[b]);
+            if (comparison != 0) return comparison < 0;
+        }
+        if (docIds[a] != docIds[b]) return docIds[a] < docIds[b];
+        return a < b;
+    }
+
+    private void load(int run) throws IOException {
+        RunReader reader = runs[run];
+        if (reader.next()) {
+            terms[run] = reader.getTerm();
+            docIds[run] = reader.getDocId();
+            termFreqs[run] = reader.getTermFreq();
+        } else {
+            exhausted[run] = true;
+            terms[run] = null;
+        }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if (winner < 0) {
+            return false;
+        }
+        if (started) {
+            load(winner);
+            replay(winner);
+        }
+        started = true;
+        if (exhausted[winner]) {
+            return false;
+        }
+        // Hand out one String instance per term even when the term comes from several runs
+        if (!terms[winner].equals(term)) {
+            term = terms[winner];
+        }
+        return true;
+    }
+
+    @Override
+    public String getTerm() {
+        return term;
+    }
+
+    @Override
+    public int getDocId() {
+        return docIds[winner];
+    }
+
+    @Override
+    public int getTermFreq() {
+        return termFreqs[winner];
+    }
+
+    // The winning run has not moved past its posting yet
+    @Override
+    public int[] getPositions() {
+        return runs[winner].getPositions();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (RunReader run : runs) {
+            try {
+                run.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package io;
+
+import compression.VarByte;
+import model.Lexicon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Memory-mapped, read-only lexicon over a file written by {@link LexiconWriter}.
+ * Opening the lexicon only maps the file. A term is found by a binary search over the first terms of the blocks and
+ * a scan of the one block that can hold it, and its entry is decoded on every lookup, so the lexicon takes no heap
+ * beyond the entries being used. Iteration goes through the terms in order.
+ */
+public class MappedLexicon extends AbstractMap<String, Lexicon> {
+    private final MappedByteBuffer buffer;
+    private final int termCount;
+    private final int blockCount;
+    private final int indexOffset;
+
+    private MappedLexicon(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.termCount = buffer.getInt(buffer.capacity() - Long.BYTES - Integer.BYTES);
+        this.blockCount = (termCount + LexiconWriter.TERMS_PER_BLOCK - 1) / LexiconWriter.TERMS_PER_BLOCK;
+        this.indexOffset = (int) buffer.getLong(buffer.capacity() - Long.BYTES);
+    }
+
+    /**
+     * Memory-maps a lexicon file.
+     * @param filePath Path of the file.
+     * @return The lexicon.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public static MappedLexicon open(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Lexicon is too large to map: " + filePath);
+            }
+            return new MappedLexicon(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int size() {
+        return termCount;
+    }
+
+    @Override
+    public boolean containsKey(Object term) {
+        return get(term) != null;
+    }
+
+    @Override
+    public Lexicon get(Object term) {
+        if (!(term instanceof String) || blockCount == 0) {
+            return null;
+        }
+        String target = (String) term;
+
+        // Last block whose first term is not after the target
+        int low = 0, high = blockCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (getFirstTerm(middle).compareTo(target) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        byte[] targetBytes = target.getBytes(StandardCharsets.UTF_8);
+        Cursor cursor = new Cursor(low);
+        while (cursor.hasNextInBlock()) {
+            cursor.next();
+            if (cursor.termEquals(targetBytes)) {
+                return cursor.readEntry();
+            }
+            cursor.skipEntry();
+        }
+        return null;
+    }
+
+    // The first term of a block is stored whole
+    private String getFirstTerm(int block) {
+        ByteBuffer entries = getBlock(block);
+        VarByte.decodeVarInt(entries);
+        int length = VarByte.decodeVarInt(entries);
+        byte[] term = new byte[length];
+        entries.get(term);
+        return new String(term, StandardCharsets.UTF_8);
+    }
+
+    // A buffer of its own positioned at a block, so concurrent lookups do not share a buffer position
+    private ByteBuffer getBlock(int block) {
+        return buffer.duplicate().position((int) buffer.getLong(indexOffset + block * Long.BYTES));
+    }
+
+    @Override
+    public Set<Entry<String, Lexicon>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Lexicon>> iterator() {
+                return new Iterator<>() {
+                    private final Cursor cursor = new Cursor(0);
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < termCount;
+                    }
+
+                    @Override
+                    public Entry<String, Lexicon> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        // The blocks are laid out one after the other, so the cursor runs on from block to block
+                        cursor.next();
+                        index++;
+                        return new SimpleImmutableEntry<>(cursor.getTerm(), cursor.readEntry());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return termCount;
+            }
+        };
+    }
+
+    // Decodes the entries of the lexicon from the start of a block onwards
+    private class Cursor {
+        private final ByteBuffer entries;
+        private final int blockEnd;
+        private int termIndex;
+        private byte[] term = new byte[64];
+        private int termLength = 0;
+
+        Cursor(int block) {
+            this.entries = getBlock(block);
+            this.termIndex = block * LexiconWriter.TERMS_PER_BLOCK;
+            this.blockEnd = Math.min(termIndex + LexiconWriter.TERMS_PER_BLOCK, termCount);
+        }
+
+        boolean hasNextInBlock() {
+            return termIndex < blockEnd;
+        }
+
+        // Decodes the next term, leaving the buffer at its entry
+        void next() {
+            int sharedPrefixLength = VarByte.decodeVarInt(entries);
+            int suffixLength = VarByte.decodeVarInt(entries);
+            termLength = sharedPrefixLength + suffixLength;
+            if (termLength > term.length) {
+                term = Arrays.copyOf(term, Math.max(termLength, term.length * 2));
+            }
+            entries.get(term, sharedPrefixLength, suffixLength);
+            termIndex++;
+        }
+
+        boolean termEquals(byte[] other) {
+            return Arrays.equals(term, 0, termLength, other, 0, other.length);
+        }
+
+        String getTerm() {
+            return new String(term, 0, termLength, StandardCharsets.UTF_8);
+        }
+
+        Lexicon readEntry() {
+            int listBlockCount = VarByte.decodeVarInt(entries);
+            int documentFrequency = VarByte.decodeVarInt(entries);
+            float maxScore = entries.getFloat();
+            long impactOffset = VarByte.decodeVarLong(entries);
+            long positionsOffset = VarByte.decodeVarLong(entries);
+            int inlineCount = VarByte.decodeVarInt(entries);
+            Lexicon lexicon;
+            if (inlineCount == 0) {
+                long startOffset = VarByte.decodeVarLong(entries);
+                long listLength = VarByte.decodeVarLong(entries);
+                lexicon = new Lexicon(startOffset, startOffset + listLength, listBlockCount, documentFrequency, maxScore);
+            } else {
+                int[] docIds = new int[inlineCount];
+                int[] termFreqs = new int[inlineCount];
+                int docId = 0;
+                for (int i = 0; i < inlineCount; i++) {
+                    docId += VarByte.decodeVarInt(entries);
+                    docIds[i] = docId;
+                    termFreqs[i] = VarByte.decodeVarInt(entries);
+                }
+                lexicon = new Lexicon(0, 0, listBlockCount, documentFrequency, maxScore);
+                lexicon.setInlinePostings(docIds, termFreqs);
+            }
+            lexicon.setImpactOffset(impactOffset);
+            lexicon.setPositionsOffset(positionsOffset);
+            return lexicon;
+        }
+
+        void skipEntry() {
+            VarByte.decodeVarInt(entries);
+            VarByte.decodeVarInt(entries);
+            entries.position(entries.position() + Float.BYTES);
+            VarByte.decodeVarLong(entries);
+            VarByte.decodeVarLong(entries);
+            int inlineCount = VarByte.decodeVarInt(entries);
+            if (inlineCount == 0) {
+                VarByte.decodeVarLong(entries);
+                VarByte.decodeVarLong(entries);
+            }
+            for (int i = 0; i < 2 * inlineCount; i++) {
+                VarByte.decodeVarInt(entries);
+            }
+        }
+    }
+}
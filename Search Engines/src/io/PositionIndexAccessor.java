@@ -0,0 +1,113 @@
+package io;
+
+import compression.PostingBlockCompressor;
+import compression.VarByte;
+import model.Lexicon;
+import model.PositionList;
+import model.TermIndexList;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Reads the positions file written by {@link PositionListWriter}.
+ * Positions are read for the posting a {@link TermIndexList} is positioned at, so only the blocks of documents
+ * that a query asks about are read and decoded.
+ */
+public class PositionIndexAccessor {
+    // Bytes read when a list is opened, enough for the block entries of nearly every list
+    private static final int OPEN_READ_SIZE = 1 << 10;
+
+    // Opens the positions list of a term, decoding its block entries
+    public static PositionList openList(String term, Map<String, Lexicon> lexiconMap, RandomAccessFile positionsFile) throws IOException {
+        return openList(term, lexiconMap.get(term), positionsFile);
+    }
+
+    // Opens the positions list of a lexicon entry already looked up
+    public static PositionList openList(String term, Lexicon lexicon, RandomAccessFile positionsFile) throws IOException {
+        long listOffset = lexicon.getPositionsOffset();
+        byte[] headerBytes = new byte[(int) Math.min(OPEN_READ_SIZE, positionsFile.length() - listOffset)];
+        positionsFile.seek(listOffset);
+        positionsFile.readFully(headerBytes);
+
+        ByteBuffer header = ByteBuffer.wrap(headerBytes);
+        int headerLength = VarByte.decodeVarInt(header);
+        int blocksStart = header.position() + headerLength;
+        if (blocksStart > headerBytes.length) {
+            int read = headerBytes.length;
+            headerBytes = Arrays.copyOf(headerBytes, blocksStart);
+            positionsFile.readFully(headerBytes, read, blocksStart - read);
+            header = ByteBuffer.wrap(headerBytes).position(header.position());
+        }
+
+        int blockCount = lexicon.getBlockCount();
+        byte[] blockCodecs = new byte[blockCount];
+        long[] blockOffsets = new long[blockCount];
+        int[] blockSizes = new int[blockCount];
+        long blockOffset = listOffset + blocksStart;
+        for (int block = 0; block < blockCount; block++) {
+            blockCodecs[block] = header.get();
+            blockSizes[block] = VarByte.decodeVarInt(header);
+            blockOffsets[block] = blockOffset;
+            blockOffset += blockSizes[block];
+        }
+        return new PositionList(term, blockCodecs, blockOffsets, blockSizes, PostingListWriter.BLOCK_SIZE);
+    }
+
+    // Reads and decodes the positions of a block, the frequencies of the block telling where each posting's positions start
+    private static void loadBlock(int block, PositionList positionList, TermIndexList termList, RandomAccessFile positionsFile) throws IOException {
+        int[] termFreqs = termList.getTermFreqs();
+        int[] postingStarts = positionList.getPostingStarts();
+        int postingCount = termList.getBlockPostingCount(block);
+        for (int i = 0; i < postingCount; i++) {
+            postingStarts[i + 1] = postingStarts[i] + termFreqs[i];
+        }
+        int positionCount = postingStarts[postingCount];
+        if (positionList.getPositionGaps().length < positionCount) {
+            positionList.setPositionGaps(new int[Math.max(positionCount, positionList.getPositionGaps().length * 2)]);
+        }
+        int size = positionList.blockSizes[block];
+        if (positionList.getBlockBytes().length < size) {
+            positionList.setBlockBytes(new byte[Math.max(size, positionList.getBlockBytes().length * 2)]);
+        }
+        positionsFile.seek(positionList.blockOffsets[block]);
+        positionsFile.readFully(positionList.getBlockBytes(), 0, size);
+        PostingBlockCompressor.decompressPositions(positionList.getBlockBytes(), 0, positionCount, positionList.blockCodecs[block],
+                positionList.getPositionGaps());
+        positionList.setCurrentBlockIndex(block);
+    }
+
+    /**
+     * Gets the positions of the term in the document of the current posting of its inverted list.
+     * @param positionList Positions list of the term.
+     * @param termList Inverted list of the term, positioned at the posting.
+     * @param indexFile The inverted index file.
+     * @param positionsFile The positions file.
+     * @param positions Array to decode into, replaced by a larger one if it is too small.
+     * @return The array holding the positions, ascending, in its first getFreq(termList) entries.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static int[] getPositions(PositionList positionList, TermIndexList termList, RandomAccessFile indexFile,
+                                     RandomAccessFile positionsFile, int[] positions) throws IOException {
+        // Decodes the frequencies of the whole block, which the positions of the block need too
+        int termFreq = InvertedIndexAccessor.getFreq(termList, indexFile);
+        int block = termList.getCurrentBlockIndex();
+        if (positionList.getCurrentBlockIndex() != block) {
+            loadBlock(block, positionList, termList, positionsFile);
+        }
+        if (positions.length < termFreq) {
+            positions = new int[Math.max(termFreq, positions.length * 2)];
+        }
+        int[] positionGaps = positionList.getPositionGaps();
+        int start = positionList.getPostingStarts()[termList.getPositionInCurrentBlock()];
+        int position = 0;
+        for (int i = 0; i < termFreq; i++) {
+            position += positionGaps[start + i];
+            positions[i] = position;
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,81 @@
+package io;
+
+import compression.PostingBlockCompressor;
+import compression.VarByte;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes the positions file next to the inverted index: for every term, the positions of the term in the documents
+ * of its postings, in blocks that parallel the blocks of its inverted list.
+ *
+ * <POSITIONS LIST>
+ * headerLength     VarByte, bytes of the block entries
+ * blockEntries     per block: codec byte, VarByte size of the block
+ * blocks           per block, per posting: gaps between the positions of the term in the document, the first taken from 0
+ *
+ * A block holds as many gaps as the frequencies of the block's postings add up to, so reading it takes the
+ * frequencies from the inverted list.
+ */
+public class PositionListWriter {
+    private final IndexWriter positionsFile;
+    private final ByteArrayOutputStream blockEntries = new ByteArrayOutputStream();
+    private final DataOutputStream blockEntriesOutput = new DataOutputStream(blockEntries);
+    private final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+    // Position gaps of the block being filled
+    private int[] blockPositionGaps = new int[1 << 10];
+    private int blockPositionCount;
+
+    /**
+     * @param positionsFile Writer of the positions file.
+     */
+    public PositionListWriter(IndexWriter positionsFile) {
+        this.positionsFile = positionsFile;
+    }
+
+    /**
+     * Adds the positions of the next posting of the current block.
+     * @param positions Positions of the term in the document, ascending.
+     * @param termFreq Number of positions.
+     */
+    public void addPosting(int[] positions, int termFreq) {
+        if (blockPositionCount + termFreq > blockPositionGaps.length) {
+            blockPositionGaps = Arrays.copyOf(blockPositionGaps, Math.max(blockPositionCount + termFreq, blockPositionGaps.length * 2));
+        }
+        int previous = 0;
+        for (int i = 0; i < termFreq; i++) {
+            blockPositionGaps[blockPositionCount++] = positions[i] - previous;
+            previous = positions[i];
+        }
+    }
+
+    /**
+     * Compresses the positions of the postings added since the last block, which make the next block of the current list.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void finishBlock() throws IOException {
+        int start = blocks.size();
+        int codec = PostingBlockCompressor.compressPositions(blockPositionGaps, blockPositionCount, blocks);
+        blockEntriesOutput.writeByte(codec);
+        VarByte.encodeVarInt(blockEntriesOutput, blocks.size() - start);
+        blockPositionCount = 0;
+    }
+
+    /**
+     * Writes the header and the blocks of the current list, and starts a new list.
+     * @return Position of the list in the positions file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public long finishList() throws IOException {
+        long listOffset = positionsFile.getFilePointer();
+        VarByte.encodeVarInt(positionsFile, blockEntries.size());
+        positionsFile.write(blockEntries.toByteArray(), 0, blockEntries.size());
+        positionsFile.write(blocks.toByteArray(), 0, blocks.size());
+        blockEntries.reset();
+        blocks.reset();
+        return listOffset;
+    }
+}
@@ -0,0 +1,223 @@
+package io;
+
+import java.util.Arrays;
+
+/**
+ * In-memory buffer of postings for one run, kept in primitive arrays.
+ * Terms are interned into a {@link TermDictionary}, and a posting is stored as a (termId, docId, termFreq) triple.
+ * A buffer recording positions also keeps the positions of every posting, laid out one posting after the other.
+ * Documents must be added in increasing docId order.
+ */
+public class PostingBuffer {
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    // Three ints per posting plus the sort order built when the buffer is spilled
+    private static final int BYTES_PER_POSTING = 16;
+    // String and array headers, hash table slots and the per-term counters used while counting and sorting
+    private static final int BYTES_PER_TERM = 80;
+    // Start of the posting's positions, and every position
+    private static final int BYTES_PER_POSITION_START = 4;
+    private static final int BYTES_PER_POSITION = 4;
+
+    private final boolean isRecordingPositions;
+    private final TermDictionary dictionary = new TermDictionary();
+    private int[] termIds = new int[INITIAL_CAPACITY];
+    private int[] docIds = new int[INITIAL_CAPACITY];
+    private int[] termFreqs = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private int[] positionStarts;
+    private int[] positions;
+    private int positionCount = 0;
+    private int[] postingPositions = new int[16];
+
+    // Term frequencies of the current document, indexed by termId
+    private int[] documentTermFreqs = new int[INITIAL_CAPACITY];
+    private int[] documentTermIds = new int[1024];
+    private int documentTermCount = 0;
+    // Terms of the current document in text order, and the index of every termId in documentTermIds
+    private int[] documentTerms;
+    private int documentLength = 0;
+    private int[] documentTermSlots;
+
+    public PostingBuffer() {
+        this(false);
+    }
+
+    /**
+     * @param isRecordingPositions Whether to keep the positions of the terms in their documents.
+     */
+    public PostingBuffer(boolean isRecordingPositions) {
+        this.isRecordingPositions = isRecordingPositions;
+        if (isRecordingPositions) {
+            positionStarts = new int[INITIAL_CAPACITY];
+            positions = new int[INITIAL_CAPACITY];
+            documentTerms = new int[1024];
+            documentTermSlots = new int[INITIAL_CAPACITY];
+        }
+    }
+
+    public boolean isRecordingPositions() {
+        return isRecordingPositions;
+    }
+
+    /**
+     * Counts one occurrence of a term in the current document.
+     * @param term Buffer holding the term.
+     * @param length Length of the term in the buffer.
+     */
+    public void addTerm(char[] term, int length) {
+        int termId = dictionary.getOrAdd(term, length);
+        if (termId >= documentTermFreqs.length) {
+            documentTermFreqs = Arrays.copyOf(documentTermFreqs, Math.max(termId + 1, documentTermFreqs.length * 2));
+            if (isRecordingPositions) {
+                documentTermSlots = Arrays.copyOf(documentTermSlots, documentTermFreqs.length);
+            }
+        }
+        if (documentTermFreqs[termId]++ == 0) {
+            if (documentTermCount == documentTermIds.length) {
+                documentTermIds = Arrays.copyOf(documentTermIds, documentTermCount * 2);
+            }
+            if (isRecordingPositions) {
+                documentTermSlots[termId] = documentTermCount;
+            }
+            documentTermIds[documentTermCount++] = termId;
+        }
+        if (isRecordingPositions) {
+            if (documentLength == documentTerms.length) {
+                documentTerms = Arrays.copyOf(documentTerms, documentLength * 2);
+            }
+            documentTerms[documentLength++] = termId;
+        }
+    }
+
+    /**
+     * Turns the terms counted for the current document into postings.
+     * @param docId ID of the current document.
+     */
+    public void endDocument(int docId) {
+        ensureCapacity(size + documentTermCount);
+        if (isRecordingPositions) {
+            addPositions();
+        }
+        for (int i = 0; i < documentTermCount; i++) {
+            int termId = documentTermIds[i];
+            termIds[size] = termId;
+            docIds[size] = docId;
+            termFreqs[size] = documentTermFreqs[termId];
+            documentTermFreqs[termId] = 0;
+            size++;
+        }
+        documentTermCount = 0;
+    }
+
+    // Lays out the positions of the current document's postings, in the order endDocument adds the postings
+    private void addPositions() {
+        if (positionCount + documentLength > positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(positionCount + documentLength, positions.length + (positions.length >> 1)));
+        }
+        int start = positionCount;
+        for (int i = 0; i < documentTermCount; i++) {
+            positionStarts[size + i] = start;
+            start += documentTermFreqs[documentTermIds[i]];
+        }
+        // Positions are visited in increasing order, so every posting's positions come out ascending
+        for (int position = 0; position < documentLength; position++) {
+            int posting = size + documentTermSlots[documentTerms[position]];
+            positions[positionStarts[posting]++] = position;
+        }
+        for (int i = 0; i < documentTermCount; i++) {
+            positionStarts[size + i] -= documentTermFreqs[documentTermIds[i]];
+        }
+        positionCount += documentLength;
+        documentLength = 0;
+    }
+
+    /**
+     * Orders the postings by term, as compared by {@link String#compareTo}, and then by docId.
+     * Postings are counting-sorted on the rank of their term; the sort is stable and postings were
+     * added in docId order, so postings of the same term stay ordered by docId.
+     * @return Posting indexes in sorted order.
+     */
+    public int[] sort() {
+        int[] ranks = dictionary.computeRanks();
+        int[] offsets = new int[dictionary.size() + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[ranks[termIds[i]] + 1]++;
+        }
+        for (int rank = 0; rank < dictionary.size(); rank++) {
+            offsets[rank + 1] += offsets[rank];
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[offsets[ranks[termIds[i]]]++] = i;
+        }
+        return order;
+    }
+
+    public String getTerm(int index) {
+        return dictionary.getTerm(termIds[index]);
+    }
+
+    public int getDocId(int index) {
+        return docIds[index];
+    }
+
+    public int getTermFreq(int index) {
+        return termFreqs[index];
+    }
+
+    /**
+     * Positions of a posting's term in its document, in the first getTermFreq(index) entries.
+     * The array is reused by the next call.
+     * @param index Index of the posting.
+     * @return The positions, or null when the buffer does not record positions.
+     */
+    public int[] getPositions(int index) {
+        if (!isRecordingPositions) {
+            return null;
+        }
+        int termFreq = termFreqs[index];
+        if (termFreq > postingPositions.length) {
+            postingPositions = new int[Math.max(termFreq, postingPositions.length * 2)];
+        }
+        System.arraycopy(positions, positionStarts[index], postingPositions, 0, termFreq);
+        return postingPositions;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Estimates the heap used by the postings and terms of the buffer, including what sorting it will need.
+     * @return Estimated size in bytes.
+     */
+    public long estimatedBytes() {
+        long positionBytes = isRecordingPositions ? (long) size * BYTES_PER_POSITION_START + (long) positionCount * BYTES_PER_POSITION : 0;
+        return (long) size * BYTES_PER_POSTING + positionBytes
+                + (long) dictionary.size() * BYTES_PER_TERM
+                + dictionary.getTermCharacters() * Character.BYTES;
+    }
+
+    // Removes all postings and terms, keeping the allocated arrays for the next run
+    public void clear() {
+        dictionary.clear();
+        size = 0;
+        positionCount = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > termIds.length) {
+            int newCapacity = Math.max(capacity, termIds.length + (termIds.length >> 1));
+            termIds = Arrays.copyOf(termIds, newCapacity);
+            docIds = Arrays.copyOf(docIds, newCapacity);
+            termFreqs = Arrays.copyOf(termFreqs, newCapacity);
+            if (isRecordingPositions) {
+                positionStarts = Arrays.copyOf(positionStarts, newCapacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package io;
+
+import compression.PostingBlockCompressor;
+import compression.VarByte;
+import model.Posting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the compressed blocks of one term's inverted list and writes the list, header first, to the index file.
+ * A list describes itself, so opening it needs nothing but its offset in the index file.
+ *
+ * <POSTING LIST>
+ * headerLength     VarByte, bytes from blockCount up to the first block
+ * blockCount       VarByte
+ * postingCount     VarByte
+ * skipTable        per group of SKIP_INTERVAL blocks: VarByte gap between the last docIds of the group and
+ *                  of the previous group, VarByte size of the group's block entries, VarByte size of the group's blocks
+ * blockEntries     per block: VarByte gap between its last docId and that of the previous block,
+ *                  VarByte size of its docId part, VarByte size of its frequency part, codecs byte,
+ *                  float maximum score of the block
+ * blocks           per block: docId gaps, the first taken from the last docId of the previous block,
+ *                  then term frequencies
+ *
+ * Every block holds BLOCK_SIZE postings but the last.
+ * Maximum scores are the largest BM25 score of any posting, rounded up to a float, so they bound the scores
+ * a query computes with the same k1 and b.
+ */
+public class PostingListWriter {
+    public static final int BLOCK_SIZE = 128;
+    public static final int SKIP_INTERVAL = 64;
+
+    private final IndexWriter indexFile;
+    private final DocumentTable documents;
+    private final double k1;
+    private final double b;
+    private final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+    private int[] lastDocIds = new int[16];
+    private int[] docIdBlockSizes = new int[16];
+    private int[] termFreqBlockSizes = new int[16];
+    private byte[] blockCodecs = new byte[16];
+    // Smallest and largest term frequency factor of the score in each block; the idf is only known once the list is complete
+    private double[] minTermFreqFactors = new double[16];
+    private double[] maxTermFreqFactors = new double[16];
+    private int blockCount = 0;
+    private int postingCount = 0;
+
+    /**
+     * @param indexFile Writer of the index file.
+     * @param documents Document lengths, for the maximum scores.
+     * @param k1 BM25 term frequency saturation the maximum scores are computed with.
+     * @param b BM25 length normalization the maximum scores are computed with.
+     */
+    public PostingListWriter(IndexWriter indexFile, DocumentTable documents, double k1, double b) {
+        this.indexFile = indexFile;
+        this.documents = documents;
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * Compresses the next block of the current list.
+     * @param postings Postings of the block, ordered by docId; fewer than BLOCK_SIZE only for the last block.
+     */
+    public void addBlock(List<Posting> postings) {
+        // Readers find the size of a block from its index, so every earlier block must be full
+        if (postingCount % BLOCK_SIZE != 0 || postings.isEmpty() || postings.size() > BLOCK_SIZE) {
+            throw new IllegalStateException("Only the last block of a list may hold fewer than " + BLOCK_SIZE + " postings");
+        }
+        if (blockCount == lastDocIds.length) {
+            int capacity = blockCount * 2;
+            lastDocIds = Arrays.copyOf(lastDocIds, capacity);
+            docIdBlockSizes = Arrays.copyOf(docIdBlockSizes, capacity);
+            termFreqBlockSizes = Arrays.copyOf(termFreqBlockSizes, capacity);
+            blockCodecs = Arrays.copyOf(blockCodecs, capacity);
+            minTermFreqFactors = Arrays.copyOf(minTermFreqFactors, capacity);
+            maxTermFreqFactors = Arrays.copyOf(maxTermFreqFactors, capacity);
+        }
+        int previousDocId = blockCount == 0 ? 0 : lastDocIds[blockCount - 1];
+        int start = blocks.size();
+        int docIdCodec = PostingBlockCompressor.compressDocIds(postings, previousDocId, blocks);
+        int termFreqStart = blocks.size();
+        int termFreqCodec = PostingBlockCompressor.compressTermFreqs(postings, blocks);
+
+        lastDocIds[blockCount] = postings.get(postings.size() - 1).docId;
+        docIdBlockSizes[blockCount] = termFreqStart - start;
+        termFreqBlockSizes[blockCount] = blocks.size() - termFreqStart;
+        blockCodecs[blockCount] = PostingBlockCompressor.packCodecs(docIdCodec, termFreqCodec);
+        double minFactor = Double.MAX_VALUE, maxFactor = -Double.MAX_VALUE;
+        for (Posting posting : postings) {
+            double factor = getTermFreqFactor(posting);
+            minFactor = Math.min(minFactor, factor);
+            maxFactor = Math.max(maxFactor, factor);
+        }
+        minTermFreqFactors[blockCount] = minFactor;
+        maxTermFreqFactors[blockCount] = maxFactor;
+        blockCount++;
+        postingCount += postings.size();
+    }
+
+    /**
+     * Computes the maximum score of a list kept in its lexicon entry instead of the index file, the same as that of
+     * the list written as one block. Nothing is written.
+     * @param postings Postings of the list.
+     * @param documentFrequency Document frequency the maximum score is computed with.
+     * @return Maximum score of the list.
+     */
+    public float getMaxScore(List<Posting> postings, int documentFrequency) {
+        double idf = InvertedIndexAccessor.getIdf(documentFrequency, documents.getDocumentCount());
+        double factor = idf >= 0 ? -Double.MAX_VALUE : Double.MAX_VALUE;
+        for (Posting posting : postings) {
+            factor = idf >= 0 ? Math.max(factor, getTermFreqFactor(posting)) : Math.min(factor, getTermFreqFactor(posting));
+        }
+        return roundUp(idf * factor);
+    }
+
+    private double getTermFreqFactor(Posting posting) {
+        return InvertedIndexAccessor.getTermFreqFactor(posting.termFreq, documents.getTermCount(posting.docId),
+                k1, b, documents.getAverageTermCount());
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Writes the header and the blocks of the current list, and starts a new list.
+     * @return Maximum score of the list.
+     * @throws IOException If an I/O error occurs.
+     */
+    public float finishList() throws IOException {
+        // Every posting of the list counts towards the document frequency
+        return finishList(postingCount);
+    }
+
+    /**
+     * Writes the header and the blocks of the current list, and starts a new list.
+     * @param documentFrequency Document frequency the maximum scores are computed with; that of the full index
+     *                          for a list that a pruned index keeps only part of.
+     * @return Maximum score of the list.
+     * @throws IOException If an I/O error occurs.
+     */
+    public float finishList(int documentFrequency) throws IOException {
+        double idf = InvertedIndexAccessor.getIdf(documentFrequency, documents.getDocumentCount());
+        float listMaxScore = -Float.MAX_VALUE;
+
+        ByteArrayOutputStream skipTable = new ByteArrayOutputStream();
+        ByteArrayOutputStream blockEntries = new ByteArrayOutputStream();
+        DataOutputStream skipTableOutput = new DataOutputStream(skipTable);
+        DataOutputStream blockEntriesOutput = new DataOutputStream(blockEntries);
+
+        int previousGroupLastDocId = 0;
+        for (int groupStart = 0; groupStart < blockCount; groupStart += SKIP_INTERVAL) {
+            int groupEnd = Math.min(groupStart + SKIP_INTERVAL, blockCount);
+            int entriesStart = blockEntries.size();
+            long groupBlockBytes = 0;
+            for (int block = groupStart; block < groupEnd; block++) {
+                // A negative idf turns the smallest factor into the largest score
+                float blockMaxScore = roundUp(idf * (idf >= 0 ? maxTermFreqFactors[block] : minTermFreqFactors[block]));
+                listMaxScore = Math.max(listMaxScore, blockMaxScore);
+                int previousDocId = block == 0 ? 0 : lastDocIds[block - 1];
+                VarByte.encodeVarInt(blockEntriesOutput, lastDocIds[block] - previousDocId);
+                VarByte.encodeVarInt(blockEntriesOutput, docIdBlockSizes[block]);
+                VarByte.encodeVarInt(blockEntriesOutput, termFreqBlockSizes[block]);
+                blockEntriesOutput.writeByte(blockCodecs[block]);
+                blockEntriesOutput.writeFloat(blockMaxScore);
+                groupBlockBytes += docIdBlockSizes[block] + termFreqBlockSizes[block];
+            }
+            int groupLastDocId = lastDocIds[groupEnd - 1];
+            VarByte.encodeVarInt(skipTableOutput, groupLastDocId - previousGroupLastDocId);
+            VarByte.encodeVarInt(skipTableOutput, blockEntries.size() - entriesStart);
+            VarByte.encodeVarLong(skipTableOutput, groupBlockBytes);
+            previousGroupLastDocId = groupLastDocId;
+        }
+
+        ByteArrayOutputStream counts = new ByteArrayOutputStream();
+        DataOutputStream countsOutput = new DataOutputStream(counts);
+        VarByte.encodeVarInt(countsOutput, blockCount);
+        VarByte.encodeVarInt(countsOutput, postingCount);
+
+        VarByte.encodeVarInt(indexFile, counts.size() + skipTable.size() + blockEntries.size());
+        write(counts);
+        write(skipTable);
+        write(blockEntries);
+        write(blocks);
+
+        blocks.reset();
+        blockCount = 0;
+        postingCount = 0;
+        return listMaxScore;
+    }
+
+    // Nearest float that is not below the score
+    private static float roundUp(double score) {
+        float rounded = (float) score;
+        return rounded < score ? Math.nextUp(rounded) : rounded;
+    }
+
+    private void write(ByteArrayOutputStream bytes) throws IOException {
+        indexFile.write(bytes.toByteArray(), 0, bytes.size());
+    }
+}
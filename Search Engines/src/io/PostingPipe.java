@@ -0,0 +1,221 @@
+package io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands postings from one thread to another in batches, through a bounded queue.
+ * The producer writes to {@link #getWriter()} and the consumer reads the same postings, in the same order,
+ * from {@link #getReader()}, so a merge can feed the index builder without an intermediate file.
+ * A fixed number of batches is allocated up front and recycled, so the producer blocks when the consumer falls behind.
+ */
+public class PostingPipe {
+    private static final Batch END_OF_POSTINGS = new Batch(0);
+
+    private final BlockingQueue<Batch> filledBatches;
+    private final BlockingQueue<Batch> emptyBatches;
+    private final Writer writer = new Writer();
+    private final Reader reader = new Reader();
+    private volatile IOException failure = null;
+    private volatile boolean isReaderClosed = false;
+
+    private static class Batch {
+        final String[] terms;
+        final int[] docIds;
+        final int[] termFreqs;
+        // Start of the positions of every posting in positions, -1 for a posting without positions
+        final int[] positionStarts;
+        int[] positions = new int[0];
+        int size;
+        int positionCount;
+
+        Batch(int capacity) {
+            this.terms = new String[capacity];
+            this.docIds = new int[capacity];
+            this.termFreqs = new int[capacity];
+            this.positionStarts = new int[capacity];
+        }
+    }
+
+    /**
+     * @param batchSize  number of postings per batch
+     * @param queueDepth number of filled batches that may wait for the consumer
+     */
+    public PostingPipe(int batchSize, int queueDepth) {
+        // One batch is being filled and one being read besides the queued ones, plus room for the end marker
+        this.filledBatches = new ArrayBlockingQueue<>(queueDepth + 3);
+        this.emptyBatches = new ArrayBlockingQueue<>(queueDepth + 2);
+        for (int i = 0; i < queueDepth + 2; i++) {
+            emptyBatches.add(new Batch(batchSize));
+        }
+    }
+
+    public Writer getWriter() {
+        return writer;
+    }
+
+    public RunReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Producer side. {@link #close()} ends the postings normally, {@link #fail(Exception)} ends them with an error
+     * that the reader rethrows.
+     */
+    public class Writer implements RunWriter {
+        private Batch current = null;
+        private boolean isClosed = false;
+
+        @Override
+        public void write(String term, int docId, int termFreq, int[] positions) throws IOException {
+            if (current == null) {
+                current = take(emptyBatches);
+                current.size = 0;
+                current.positionCount = 0;
+            }
+            current.terms[current.size] = term;
+            current.docIds[current.size] = docId;
+            current.termFreqs[current.size] = termFreq;
+            if (positions == null) {
+                current.positionStarts[current.size] = -1;
+            } else {
+                if (current.positionCount + termFreq > current.positions.length) {
+                    current.positions = Arrays.copyOf(current.positions,
+                            Math.max(current.positionCount + termFreq, current.positions.length * 2));
+                }
+                System.arraycopy(positions, 0, current.positions, current.positionCount, termFreq);
+                current.positionStarts[current.size] = current.positionCount;
+                current.positionCount += termFreq;
+            }
+            if (++current.size == current.terms.length) {
+                filledBatches.add(current);
+                current = null;
+            }
+        }
+
+        /**
+         * Ends the postings with an error.
+         * @param cause Why the producer stopped.
+         */
+        public void fail(Exception cause) {
+            failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            current = null;
+            end();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null && current.size > 0) {
+                filledBatches.add(current);
+            }
+            current = null;
+            end();
+        }
+
+        private void end() {
+            if (!isClosed) {
+                isClosed = true;
+                filledBatches.add(END_OF_POSTINGS);
+            }
+        }
+
+        private Batch take(BlockingQueue<Batch> batches) throws IOException {
+            if (isReaderClosed) {
+                throw new IOException("Posting pipe was closed by its reader");
+            }
+            try {
+                return batches.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the reader");
+            }
+        }
+    }
+
+    // Consumer side
+    private class Reader implements RunReader {
+        private Batch current = null;
+        private int[] positions = new int[16];
+        private int position = 0;
+        private boolean isEndOfPostings = false;
+
+        @Override
+        public boolean next() throws IOException {
+            if (current != null && ++position < current.size) {
+                return true;
+            }
+            if (isEndOfPostings) {
+                return false;
+            }
+            if (current != null) {
+                emptyBatches.add(current);
+                current = null;
+            }
+            try {
+                Batch batch = filledBatches.take();
+                if (batch == END_OF_POSTINGS) {
+                    isEndOfPostings = true;
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return false;
+                }
+                current = batch;
+                position = 0;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for postings");
+            }
+        }
+
+        @Override
+        public String getTerm() {
+            return current.terms[position];
+        }
+
+        @Override
+        public int getDocId() {
+            return current.docIds[position];
+        }
+
+        @Override
+        public int getTermFreq() {
+            return current.termFreqs[position];
+        }
+
+        @Override
+        public int[] getPositions() {
+            int start = current.positionStarts[position];
+            if (start < 0) {
+                return null;
+            }
+            int termFreq = current.termFreqs[position];
+            if (termFreq > positions.length) {
+                positions = new int[Math.max(termFreq, positions.length * 2)];
+            }
+            System.arraycopy(current.positions, start, positions, 0, termFreq);
+            return positions;
+        }
+
+        // Gives every batch back, so a producer blocked on a full pipe wakes up and fails
+        @Override
+        public void close() {
+            isReaderClosed = true;
+            isEndOfPostings = true;
+            if (current != null) {
+                emptyBatches.add(current);
+                current = null;
+            }
+            Batch batch;
+            while ((batch = filledBatches.poll()) != null) {
+                if (batch != END_OF_POSTINGS) {
+                    emptyBatches.add(batch);
+                }
+            }
+        }
+    }
+}
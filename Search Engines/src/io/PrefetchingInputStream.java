@@ -0,0 +1,124 @@
+package io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Input stream over a file channel with two large buffers.
+ * While the caller consumes one buffer, the other is filled on an I/O executor that may be shared by many streams,
+ * so every read from the file is one large sequential read however many streams are interleaved.
+ */
+public class PrefetchingInputStream extends InputStream {
+    private final FileChannel channel;
+    private final ExecutorService ioExecutor;
+    private ByteBuffer current;
+    private ByteBuffer next;
+    private Future<Boolean> pendingFill;
+    private boolean isEndOfFile = false;
+
+    /**
+     * @param channel    channel positioned where reading starts, closed together with this stream
+     * @param bufferSize size of each of the two buffers in bytes
+     * @param ioExecutor executor running the reads
+     */
+    public PrefetchingInputStream(FileChannel channel, int bufferSize, ExecutorService ioExecutor) {
+        this.channel = channel;
+        this.ioExecutor = ioExecutor;
+        this.current = ByteBuffer.allocateDirect(bufferSize).limit(0);
+        this.next = ByteBuffer.allocateDirect(bufferSize);
+        this.pendingFill = submitFill(next);
+    }
+
+    // Fills the buffer from the channel, returning false once the end of the file has been reached
+    private Future<Boolean> submitFill(ByteBuffer buffer) {
+        return ioExecutor.submit(() -> {
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read != -1 && buffer.hasRemaining());
+            buffer.flip();
+            return read != -1;
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        int n = Math.min(len, current.remaining());
+        current.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current.remaining();
+    }
+
+    // Makes sure the current buffer has unread bytes, swapping in the prefetched buffer when it is used up
+    private boolean ensureData() throws IOException {
+        if (current.hasRemaining()) {
+            return true;
+        }
+        if (pendingFill == null) {
+            return false;
+        }
+        boolean hasMore = awaitFill();
+        ByteBuffer filled = next;
+        next = current;
+        current = filled;
+        if (hasMore && !isEndOfFile) {
+            pendingFill = submitFill(next);
+        } else {
+            isEndOfFile = true;
+        }
+        return current.hasRemaining();
+    }
+
+    private boolean awaitFill() throws IOException {
+        try {
+            return pendingFill.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a read");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pendingFill = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Let a read in flight finish before its channel is closed
+        if (pendingFill != null) {
+            try {
+                awaitFill();
+            } catch (IOException ignored) {
+            }
+        }
+        channel.close();
+    }
+}
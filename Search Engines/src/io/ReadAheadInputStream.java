@@ -0,0 +1,144 @@
+package io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream that reads its source on a dedicated thread.
+ * The thread fills large chunks and hands them over through a bounded queue, so expensive reads of the
+ * source (such as gzip decompression) overlap with the work done by the consumer.
+ */
+public class ReadAheadInputStream extends InputStream {
+    private static final Chunk END_OF_STREAM = new Chunk(new byte[0]);
+
+    private final InputStream source;
+    private final BlockingQueue<Chunk> filledChunks;
+    private final BlockingQueue<Chunk> emptyChunks;
+    private final Thread readerThread;
+    private volatile IOException failure = null;
+    private Chunk current = null;
+    private boolean isEndOfStream = false;
+
+    private static class Chunk {
+        final byte[] data;
+        int length;
+        int position;
+
+        Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * @param source     stream to read ahead from, closed together with this stream
+     * @param chunkSize  size of each chunk in bytes
+     * @param queueDepth number of filled chunks that may wait for the consumer
+     */
+    public ReadAheadInputStream(InputStream source, int chunkSize, int queueDepth) {
+        this.source = source;
+        this.filledChunks = new ArrayBlockingQueue<>(queueDepth + 1);
+        // One chunk is being read by the consumer and one filled by the reader thread besides the queued ones
+        this.emptyChunks = new ArrayBlockingQueue<>(queueDepth + 2);
+        for (int i = 0; i < queueDepth + 2; i++) {
+            emptyChunks.add(new Chunk(new byte[chunkSize]));
+        }
+        this.readerThread = new Thread(this::readAhead, "read-ahead");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    // Runs on the reader thread until the source is exhausted, fails, or the stream is closed
+    private void readAhead() {
+        try {
+            while (true) {
+                Chunk chunk = emptyChunks.take();
+                int length = 0;
+                int read;
+                while (length < chunk.data.length && (read = source.read(chunk.data, length, chunk.data.length - length)) != -1) {
+                    length += read;
+                }
+                if (length > 0) {
+                    chunk.length = length;
+                    chunk.position = 0;
+                    filledChunks.put(chunk);
+                }
+                if (length < chunk.data.length) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            return;
+        }
+        try {
+            filledChunks.put(END_OF_STREAM);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureChunk()) {
+            return -1;
+        }
+        return current.data[current.position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureChunk()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - current.position);
+        System.arraycopy(current.data, current.position, b, off, n);
+        current.position += n;
+        return n;
+    }
+
+    // Makes sure the current chunk has unread bytes, returning false at the end of the stream
+    private boolean ensureChunk() throws IOException {
+        if (current != null && current.position < current.length) {
+            return true;
+        }
+        if (isEndOfStream) {
+            return false;
+        }
+        if (current != null) {
+            emptyChunks.add(current);
+            current = null;
+        }
+        try {
+            Chunk chunk = filledChunks.take();
+            if (chunk == END_OF_STREAM) {
+                isEndOfStream = true;
+                if (failure != null) {
+                    throw failure;
+                }
+                return false;
+            }
+            current = chunk;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for input");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        readerThread.interrupt();
+        try {
+            readerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        source.close();
+    }
+}
@@ -0,0 +1,113 @@
+package io;
+
+import compression.VarByte;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sparse term index of a run file, stored next to it.
+ * About every INDEX_INTERVAL bytes the writer starts a term without front-coding and records it here,
+ * so a reader can start at that offset and term ranges of a run can be located without reading it all.
+ *
+ * <RUN INDEX> (run file path + ".idx")
+ * For every indexed term:
+ *   termLength  VarByte, length of the UTF-8 encoded term in bytes
+ *   term        UTF-8 bytes
+ *   offset      long, offset of the term header in the run file
+ */
+public class RunIndex {
+    static final long INDEX_INTERVAL = 1 << 20;
+
+    private final List<String> terms;
+    private final long[] offsets;
+
+    private RunIndex(List<String> terms, long[] offsets) {
+        this.terms = terms;
+        this.offsets = offsets;
+    }
+
+    public static String indexPath(String runFilePath) {
+        return runFilePath + ".idx";
+    }
+
+    /**
+     * Loads the index of a run file.
+     * @param runFilePath Path of the run file.
+     * @return The index, empty when the run has no index file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static RunIndex load(String runFilePath) throws IOException {
+        File indexFile = new File(indexPath(runFilePath));
+        List<String> terms = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        if (indexFile.exists()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                while (input.available() > 0) {
+                    byte[] term = new byte[VarByte.decodeVarInt(input)];
+                    input.readFully(term);
+                    terms.add(new String(term, StandardCharsets.UTF_8));
+                    offsets.add(input.readLong());
+                }
+            }
+        }
+        return new RunIndex(terms, offsets.stream().mapToLong(l -> l).toArray());
+    }
+
+    public int size() {
+        return terms.size();
+    }
+
+    public String getTerm(int entry) {
+        return terms.get(entry);
+    }
+
+    public long getOffset(int entry) {
+        return offsets[entry];
+    }
+
+    /**
+     * Finds where a reader should start to see every posting whose term is at least the given term.
+     * @param term Lowest term of interest.
+     * @return Offset of the last indexed term not greater than the given term, or 0.
+     */
+    public long floorOffset(String term) {
+        int low = 0, high = terms.size() - 1;
+        long offset = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (terms.get(mid).compareTo(term) <= 0) {
+                offset = offsets[mid];
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Appends entries to the index file of a run.
+     */
+    static class Writer implements Closeable {
+        private final DataOutputStream output;
+
+        Writer(String runFilePath) throws IOException {
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexPath(runFilePath))));
+        }
+
+        void add(String term, long offset) throws IOException {
+            byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+            VarByte.encodeVarInt(output, bytes.length);
+            output.write(bytes);
+            output.writeLong(offset);
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+    }
+}
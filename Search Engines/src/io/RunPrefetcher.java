@@ -0,0 +1,64 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opens run files for a merge through {@link PrefetchingInputStream}s that share one background I/O thread.
+ * Each run gets two buffers sized from a memory budget, so a merge of any fan-in stays within the budget
+ * while still reading every run in large sequential chunks.
+ */
+public class RunPrefetcher implements Closeable {
+    private static final int MIN_BUFFER_SIZE = 64 << 10;
+    private static final int MAX_BUFFER_SIZE = 16 << 20;
+
+    private final int bufferSize;
+    private final ExecutorService ioExecutor;
+
+    /**
+     * @param memoryBudget Bytes available for read buffers across all runs open at the same time.
+     * @param maxOpenRuns  Most runs open at the same time.
+     */
+    public RunPrefetcher(long memoryBudget, int maxOpenRuns) {
+        long size = memoryBudget / (2L * Math.max(maxOpenRuns, 1));
+        this.bufferSize = (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, size));
+        this.ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "run-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Opens a run file.
+     * @param filePath Path of the run file.
+     * @param offset Offset to start at, 0 for the start of the run or an offset from the {@link RunIndex} of the run.
+     * @return Reader of the run.
+     * @throws IOException If the file cannot be opened.
+     */
+    public RunReader open(String filePath, long offset) throws IOException {
+        boolean hasPositions = BinaryRunReader.hasPositions(filePath);
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            channel.position(Math.max(offset, BinaryRunWriter.HEADER_SIZE));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new BinaryRunReader(new PrefetchingInputStream(channel, bufferSize, ioExecutor), hasPositions);
+    }
+
+    @Override
+    public void close() {
+        ioExecutor.shutdown();
+    }
+}
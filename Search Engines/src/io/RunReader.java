@@ -0,0 +1,34 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads a run of postings sorted by term and then by document ID.
+ * The getters describe the posting the last call to {@link #next()} moved to.
+ */
+public interface RunReader extends Closeable {
+    /**
+     * Moves to the next posting.
+     * @return false when the run has no more postings.
+     * @throws IOException If an I/O error occurs.
+     */
+    boolean next() throws IOException;
+
+    /**
+     * Term of the current posting.
+     * Postings of the same term return the same String instance.
+     */
+    String getTerm();
+
+    int getDocId();
+
+    int getTermFreq();
+
+    /**
+     * Positions of the term in the document of the current posting, ascending, in the first getTermFreq() entries.
+     * The array may be reused once the reader moves on.
+     * @return The positions, or null when the run holds no positions.
+     */
+    int[] getPositions();
+}
@@ -0,0 +1,108 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sorts and writes full posting buffers on a background thread while the caller keeps filling another buffer.
+ * Two buffers are used in turn, so at most one spill is in flight; handing over a buffer while the previous
+ * spill is still running blocks until it completes.
+ */
+public class RunSpiller implements Closeable {
+
+    /**
+     * Writes a full buffer to a run.
+     */
+    public interface SpillWriter {
+        void write(PostingBuffer buffer) throws IOException;
+    }
+
+    private final SpillWriter writer;
+    private final ExecutorService executor;
+    private final boolean isRecordingPositions;
+    private PostingBuffer spareBuffer;
+    private Future<?> pendingSpill = null;
+
+    public RunSpiller(SpillWriter writer) {
+        this(writer, false);
+    }
+
+    /**
+     * @param writer Writer of the full buffers.
+     * @param isRecordingPositions Whether the buffers keep the positions of the terms in their documents.
+     */
+    public RunSpiller(SpillWriter writer, boolean isRecordingPositions) {
+        this.writer = writer;
+        this.isRecordingPositions = isRecordingPositions;
+        this.spareBuffer = new PostingBuffer(isRecordingPositions);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "run-spiller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns an empty buffer to start filling.
+     */
+    public PostingBuffer firstBuffer() {
+        return new PostingBuffer(isRecordingPositions);
+    }
+
+    /**
+     * Starts spilling a full buffer in the background.
+     * @param fullBuffer Buffer to sort and write; it must not be used again by the caller.
+     * @return An empty buffer to continue with.
+     * @throws IOException If the previous spill failed.
+     */
+    public PostingBuffer spill(PostingBuffer fullBuffer) throws IOException {
+        waitForPendingSpill();
+        PostingBuffer emptyBuffer = spareBuffer;
+        spareBuffer = fullBuffer;
+        pendingSpill = executor.submit(() -> {
+            writer.write(fullBuffer);
+            fullBuffer.clear();
+            return null;
+        });
+        return emptyBuffer;
+    }
+
+    /**
+     * Waits for the last spill to finish and stops the background thread.
+     * The spare buffer is released, so a closed spiller holds no posting memory.
+     * @throws IOException If the last spill failed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            waitForPendingSpill();
+        } finally {
+            spareBuffer = null;
+            executor.shutdown();
+        }
+    }
+
+    private void waitForPendingSpill() throws IOException {
+        if (pendingSpill == null) {
+            return;
+        }
+        try {
+            pendingSpill.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a spill");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pendingSpill = null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes a run of postings sorted by term and then by document ID.
+ */
+public interface RunWriter extends Closeable {
+    /**
+     * Appends a posting to the run.
+     * @param term Term of the posting.
+     * @param docId Document ID of the posting.
+     * @param termFreq Frequency of the term in the document.
+     * @throws IOException If an I/O error occurs.
+     */
+    default void write(String term, int docId, int termFreq) throws IOException {
+        write(term, docId, termFreq, null);
+    }
+
+    /**
+     * Appends a posting and the positions of its term in the document to the run.
+     * @param term Term of the posting.
+     * @param docId Document ID of the posting.
+     * @param termFreq Frequency of the term in the document.
+     * @param positions Positions of the term in the document, ascending, in the first termFreq entries;
+     *                  null when the run holds no positions.
+     * @throws IOException If an I/O error occurs.
+     */
+    void write(String term, int docId, int termFreq, int[] positions) throws IOException;
+}
@@ -0,0 +1,122 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lists the live segments of a segmented index, in the order their documents are numbered across the index.
+ * Every segment is a directory of the index holding its own inverted index, lexicon and document table, and is
+ * never changed once listed. The manifest is only ever replaced as a whole, by a rename, so a reader sees either
+ * the old or the new list of segments.
+ *
+ * <MANIFEST>           segments.manifest, text
+ * nextSegment n        number of the next segment created
+ * name documentCount   per live segment
+ */
+public class SegmentManifest {
+    public static final String FILE_NAME = "segments.manifest";
+    private static final String NEXT_SEGMENT = "nextSegment";
+
+    public static class Entry {
+        public final String name;
+        public final int documentCount;
+
+        public Entry(String name, int documentCount) {
+            this.name = name;
+            this.documentCount = documentCount;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + documentCount;
+        }
+    }
+
+    private final List<Entry> segments = new ArrayList<>();
+    private int nextSegment = 0;
+
+    /**
+     * Reads the manifest of an index.
+     * @param indexDirectory Directory of the segmented index.
+     * @return The manifest, without segments if the index has none yet.
+     * @throws IOException If the manifest cannot be read.
+     */
+    public static SegmentManifest read(String indexDirectory) throws IOException {
+        SegmentManifest manifest = new SegmentManifest();
+        Path path = Paths.get(indexDirectory, FILE_NAME);
+        if (!Files.exists(path)) {
+            return manifest;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split(" ");
+                if (fields.length != 2) {
+                    continue;
+                }
+                if (fields[0].equals(NEXT_SEGMENT)) {
+                    manifest.nextSegment = Integer.parseInt(fields[1]);
+                } else {
+                    manifest.segments.add(new Entry(fields[0], Integer.parseInt(fields[1])));
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Replaces the manifest of an index with this one.
+     * @param indexDirectory Directory of the segmented index.
+     * @throws IOException If the manifest cannot be written.
+     */
+    public void write(String indexDirectory) throws IOException {
+        Path path = Paths.get(indexDirectory, FILE_NAME);
+        Path temporaryPath = Paths.get(indexDirectory, FILE_NAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+            writer.write(NEXT_SEGMENT + " " + nextSegment);
+            writer.newLine();
+            for (Entry segment : segments) {
+                writer.write(segment.toString());
+                writer.newLine();
+            }
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public List<Entry> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    // Names a new segment; the name is only taken for good once a manifest with the segment is written
+    public String newSegmentName() {
+        return "segment" + nextSegment++;
+    }
+
+    public void addSegment(Entry segment) {
+        segments.add(segment);
+    }
+
+    /**
+     * Replaces segments by the segment they were merged into, which takes the place of the first of them.
+     * @param mergedSegments Segments that were merged, all live.
+     * @param segment Segment holding their documents, in the order of mergedSegments.
+     */
+    public void replaceSegments(List<Entry> mergedSegments, Entry segment) {
+        segments.set(segments.indexOf(mergedSegments.get(0)), segment);
+        segments.removeAll(mergedSegments.subList(1, mergedSegments.size()));
+    }
+
+    // Directory of a segment of an index
+    public static String getSegmentPath(String indexDirectory, String name) {
+        return Paths.get(indexDirectory, name).toString();
+    }
+}
@@ -1,72 +1,311 @@
 package io;
 
-import model.MergedPosting;
-
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class SortedFileMerger {
+    // Most runs one merge reads at once; each open run holds a file handle and a read buffer
+    public static final int DEFAULT_MAX_FAN_IN = 128;
+    // Memory for the read buffers of all runs open at once, see RunPrefetcher
+    public static final long DEFAULT_READ_BUFFER_BUDGET = 256L << 20;
+
     /**
      * Merges sorted temporary files into a single file.
      * @param sourcePath Path to the directory containing temporary files.
      * @param destinationPath Path for the merged output file.
      */
     public static void mergeSortedFiles(String sourcePath, String destinationPath) {
-        PriorityQueue<MergedPosting> postingsQueue = new PriorityQueue<>();
-        Map<Integer, BufferedReader> readersMap = new HashMap<>();
-
-        try (BufferedWriter mergedFileWriter = new BufferedWriter(new FileWriter(destinationPath))) {
-            // Open and initialize readers for each file
-            // Java's Stream API
-            Files.list(Paths.get(sourcePath))
-                    .filter(path -> path.toString().endsWith(".txt"))
-                    .forEach(path -> initializeReader(path, postingsQueue, readersMap));
-
-            // Merge process
-            // Maintain the sorted order of postings
-            while (!postingsQueue.isEmpty()) {
-                MergedPosting currentPosting = postingsQueue.poll();
-                processNextPosting(currentPosting, readersMap, postingsQueue, mergedFileWriter);
-            }
+        mergeSortedFiles(sourcePath, destinationPath, DEFAULT_MAX_FAN_IN, 1);
+    }
+
+    /**
+     * Merges sorted temporary files into a single file, reading at most maxFanIn runs at once.
+     * While there are more runs than that, groups of runs are merged concurrently into intermediate runs,
+     * which are deleted once they have been merged in turn.
+     * @param sourcePath Path to the directory containing temporary files.
+     * @param destinationPath Path for the merged output file.
+     * @param maxFanIn Maximum number of runs merged by one merge, at least 2.
+     * @param threadCount Number of merges that run at the same time.
+     */
+    public static void mergeSortedFiles(String sourcePath, String destinationPath, int maxFanIn, int threadCount) {
+        try (RunWriter mergedFileWriter = new BinaryRunWriter(destinationPath, hasPositions(listRunFiles(sourcePath)))) {
+            mergeSortedFiles(sourcePath, mergedFileWriter, maxFanIn, threadCount, DEFAULT_READ_BUFFER_BUDGET);
         } catch (IOException e) {
             e.printStackTrace();
+        }
+    }
+
+    /**
+     * Merges sorted temporary files into a writer, such as the writer of a {@link PostingPipe} feeding the index builder.
+     * @param sourcePath Path to the directory containing temporary files.
+     * @param destination Writer receiving the merged postings; it is not closed.
+     * @param maxFanIn Maximum number of runs merged by one merge, at least 2.
+     * @param threadCount Number of merges that run at the same time.
+     * @param readBufferBudget Bytes of read buffers shared by all runs open at the same time.
+     * @throws IOException If reading a run or writing the postings fails.
+     */
+    public static void mergeSortedFiles(String sourcePath, RunWriter destination, int maxFanIn, int threadCount,
+                                        long readBufferBudget) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threadCount, 1));
+        try {
+            List<Path> runFiles;
+            try (RunPrefetcher prefetcher = new RunPrefetcher(readBufferBudget, maxFanIn * Math.max(threadCount, 1))) {
+                runFiles = reduceRuns(listRunFiles(sourcePath), sourcePath, maxFanIn, executor, prefetcher);
+            }
+            // The last merge runs alone, so its runs share the whole budget
+            try (RunPrefetcher prefetcher = new RunPrefetcher(readBufferBudget, runFiles.size());
+                 RunReader mergedRuns = openRuns(runFiles, prefetcher)) {
+                copy(mergedRuns, destination);
+            }
+            deleteIntermediateRuns(runFiles);
         } finally {
-            closeAllReaders(readersMap);
+            executor.shutdownNow();
         }
     }
 
-    private static void initializeReader(Path filePath, PriorityQueue<MergedPosting> queue, Map<Integer, BufferedReader> readers) {
+    /**
+     * Merges sorted temporary files into partitionCount files covering disjoint, increasing term ranges,
+     * merging the ranges concurrently. Concatenated in order, the files hold the same postings as the single
+     * merged file. Range bounds are picked from the run indexes so every range holds about the same number of bytes,
+     * and each range merge starts reading every run at the indexed term just below its range.
+     * @param sourcePath Path to the directory containing temporary files.
+     * @param destinationPath Path for the merged output, the partition number is added before its extension.
+     * @param partitionCount Number of term ranges to split the merge into.
+     * @param maxFanIn Maximum number of runs merged by one merge, at least 2.
+     * @param threadCount Number of merges that run at the same time.
+     * @param readBufferBudget Bytes of read buffers shared by all runs open at the same time.
+     * @return Paths of the merged files in term order; fewer than partitionCount when the runs have few distinct index terms.
+     * @throws IOException If reducing the runs or merging a range fails; no partition or intermediate run is left behind.
+     */
+    public static List<String> mergeSortedFilesByTermRange(String sourcePath, String destinationPath, int partitionCount,
+                                                           int maxFanIn, int threadCount, long readBufferBudget) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threadCount, 1));
+        List<String> partitionPaths = new ArrayList<>();
+        // Every range merge reads all the runs left after reducing them
+        try (RunPrefetcher prefetcher = new RunPrefetcher(readBufferBudget, maxFanIn * Math.max(threadCount, 1))) {
+            List<Path> runFiles = reduceRuns(listRunFiles(sourcePath), sourcePath, maxFanIn, executor, prefetcher);
+            try {
+                List<String> splitTerms = chooseSplitTerms(runFiles, partitionCount);
+                List<Future<?>> merges = new ArrayList<>();
+                for (int partition = 0; partition <= splitTerms.size(); partition++) {
+                    String lowerTerm = partition == 0 ? null : splitTerms.get(partition - 1);
+                    String upperTerm = partition == splitTerms.size() ? null : splitTerms.get(partition);
+                    String partitionPath = getPartitionPath(destinationPath, partition);
+                    partitionPaths.add(partitionPath);
+                    merges.add(executor.submit(() -> {
+                        mergeRange(runFiles, partitionPath, lowerTerm, upperTerm, prefetcher);
+                        return null;
+                    }));
+                }
+                awaitAll(merges);
+            } catch (IOException | RuntimeException e) {
+                // Partitions of the ranges that did merge would leave whole term ranges out of the index
+                for (String partitionPath : partitionPaths) {
+                    Files.deleteIfExists(Paths.get(partitionPath));
+                    Files.deleteIfExists(Paths.get(RunIndex.indexPath(partitionPath)));
+                }
+                deleteIntermediateRuns(runFiles);
+                throw e;
+            }
+            deleteIntermediateRuns(runFiles);
+        } finally {
+            executor.shutdownNow();
+        }
+        return partitionPaths;
+    }
+
+    // merged.run -> merged-0.run
+    public static String getPartitionPath(String destinationPath, int partition) {
+        int extension = destinationPath.lastIndexOf('.');
+        if (extension <= destinationPath.lastIndexOf(File.separatorChar)) {
+            return destinationPath + "-" + partition;
+        }
+        return destinationPath.substring(0, extension) + "-" + partition + destinationPath.substring(extension);
+    }
+
+    // Merges groups of runs in passes until at most maxFanIn runs are left
+    private static List<Path> reduceRuns(List<Path> runFiles, String sourcePath, int maxFanIn,
+                                         ExecutorService executor, RunPrefetcher prefetcher) throws IOException {
+        if (maxFanIn < 2) {
+            throw new IllegalArgumentException("Fan-in must be at least 2: " + maxFanIn);
+        }
+        for (int pass = 0; runFiles.size() > maxFanIn; pass++) {
+            // Spread the runs evenly over as few groups as the fan-in allows
+            int groupCount = (runFiles.size() + maxFanIn - 1) / maxFanIn;
+            List<Path> mergedRuns = new ArrayList<>(groupCount);
+            List<Future<?>> merges = new ArrayList<>(groupCount);
+            for (int group = 0; group < groupCount; group++) {
+                List<Path> groupRuns = runFiles.subList(group * runFiles.size() / groupCount, (group + 1) * runFiles.size() / groupCount);
+                // Not ending in .run, so listRunFiles never picks it up as a temporary file
+                Path mergedRun = Paths.get(sourcePath, "pass" + pass + "-" + group + ".merge");
+                mergedRuns.add(mergedRun);
+                merges.add(executor.submit(() -> {
+                    mergeRuns(groupRuns, mergedRun.toString(), prefetcher);
+                    return null;
+                }));
+            }
+            try {
+                awaitAll(merges);
+            } catch (IOException e) {
+                deleteIntermediateRuns(mergedRuns);
+                deleteIntermediateRuns(runFiles);
+                throw e;
+            }
+            deleteIntermediateRuns(runFiles);
+            runFiles = mergedRuns;
+        }
+        return runFiles;
+    }
+
+    private static void mergeRuns(List<Path> runFiles, String destinationPath, RunPrefetcher prefetcher) throws IOException {
+        try (RunReader mergedRuns = openRuns(runFiles, prefetcher);
+             RunWriter mergedFileWriter = new BinaryRunWriter(destinationPath, hasPositions(runFiles))) {
+            copy(mergedRuns, mergedFileWriter);
+        }
+    }
+
+    // Merges the postings of the runs whose term lies in [lowerTerm, upperTerm)
+    private static void mergeRange(List<Path> runFiles, String destinationPath, String lowerTerm, String upperTerm,
+                                   RunPrefetcher prefetcher) throws IOException {
+        List<RunReader> readers = new ArrayList<>(runFiles.size());
         try {
-            String fileName = filePath.getFileName().toString();
-            int fileIndex = Util.getIndexFromFilename(fileName);
-            BufferedReader reader = new BufferedReader(new FileReader(filePath.toFile()));
-            readers.put(fileIndex, reader);
-            String line = reader.readLine();
-            if (line != null) {
-                queue.add(new MergedPosting(line, fileIndex));
+            for (Path runFile : runFiles) {
+                long offset = lowerTerm == null ? 0 : RunIndex.load(runFile.toString()).floorOffset(lowerTerm);
+                readers.add(new TermRangeRunReader(prefetcher.open(runFile.toString(), offset), lowerTerm, upperTerm));
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            closeAllReaders(readers);
+            throw e;
+        }
+        try (RunReader mergedRuns = new LoserTree(readers);
+             RunWriter mergedFileWriter = new BinaryRunWriter(destinationPath, hasPositions(runFiles))) {
+            copy(mergedRuns, mergedFileWriter);
+        }
+    }
+
+    private static void copy(RunReader mergedRuns, RunWriter mergedFileWriter) throws IOException {
+        // Maintain the sorted order of postings
+        while (mergedRuns.next()) {
+            mergedFileWriter.write(mergedRuns.getTerm(), mergedRuns.getDocId(), mergedRuns.getTermFreq(), mergedRuns.getPositions());
+        }
+    }
+
+    // The runs of one parse either all hold positions or none do
+    private static boolean hasPositions(List<Path> runFiles) throws IOException {
+        return !runFiles.isEmpty() && BinaryRunReader.hasPositions(runFiles.get(0).toString());
+    }
+
+    /*
+     * Every index entry of a run stands for the bytes up to the next entry. Walking all entries in term order,
+     * a split term is taken each time another 1/partitionCount of the total bytes has been passed.
+     */
+    private static List<String> chooseSplitTerms(List<Path> runFiles, int partitionCount) throws IOException {
+        List<String> terms = new ArrayList<>();
+        List<Long> weights = new ArrayList<>();
+        long totalWeight = 0;
+        for (Path runFile : runFiles) {
+            RunIndex index = RunIndex.load(runFile.toString());
+            long fileSize = Files.size(runFile);
+            for (int entry = 0; entry < index.size(); entry++) {
+                long end = entry + 1 < index.size() ? index.getOffset(entry + 1) : fileSize;
+                terms.add(index.getTerm(entry));
+                weights.add(end - index.getOffset(entry));
+                totalWeight += end - index.getOffset(entry);
+            }
+        }
+        Integer[] order = new Integer[terms.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(terms::get));
+
+        List<String> splitTerms = new ArrayList<>(partitionCount - 1);
+        String previousTerm = null;
+        long weight = 0;
+        for (Integer entry : order) {
+            String term = terms.get(entry);
+            long target = totalWeight * (splitTerms.size() + 1) / partitionCount;
+            // Split only between distinct terms, so no range is empty
+            if (splitTerms.size() < partitionCount - 1 && weight >= target
+                    && previousTerm != null && !term.equals(previousTerm)) {
+                splitTerms.add(term);
+            }
+            weight += weights.get(entry);
+            previousTerm = term;
+        }
+        return splitTerms;
+    }
+
+    // Waits for every merge, even after one has failed, so no merge is still writing a file its caller deletes
+    private static void awaitAll(List<Future<?>> merges) throws IOException {
+        IOException failure = null;
+        try {
+            for (Future<?> merge : merges) {
+                try {
+                    merge.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof IOException ? (IOException) e.getCause()
+                                : new IOException("Merging runs failed", e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while merging runs");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Deletes the runs written by earlier passes, leaving the temporary files of the parser in place
+    private static void deleteIntermediateRuns(List<Path> runFiles) throws IOException {
+        for (Path runFile : runFiles) {
+            if (runFile.toString().endsWith(".merge")) {
+                Files.deleteIfExists(runFile);
+                Files.deleteIfExists(Paths.get(RunIndex.indexPath(runFile.toString())));
+            }
         }
     }
 
-    private static void processNextPosting(MergedPosting posting, Map<Integer, BufferedReader> readers, PriorityQueue<MergedPosting> queue, BufferedWriter writer) throws IOException {
-        BufferedReader currentReader = readers.get(posting.getFileIndex());
-        String nextLine = currentReader.readLine();
-        if (nextLine != null) {
-            queue.add(new MergedPosting(nextLine, posting.getFileIndex()));
+    // Lists the temporary files of a directory ordered by their index
+    static List<Path> listRunFiles(String sourcePath) throws IOException {
+        try (Stream<Path> paths = Files.list(Paths.get(sourcePath))) {
+            return paths.filter(path -> path.toString().endsWith(".run"))
+                    .sorted(Comparator.comparingInt(path -> Util.getIndexFromFilename(path.getFileName().toString())))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // Opens a prefetching reader for each file and merges them with a loser tree
+    private static RunReader openRuns(List<Path> runFiles, RunPrefetcher prefetcher) throws IOException {
+        List<RunReader> readers = new ArrayList<>(runFiles.size());
+        try {
+            for (Path runFile : runFiles) {
+                readers.add(prefetcher.open(runFile.toString(), 0));
+            }
+            return new LoserTree(readers);
+        } catch (IOException e) {
+            closeAllReaders(readers);
+            throw e;
         }
-        writer.write(posting.toString());
-        if (!queue.isEmpty()) writer.newLine();
     }
 
-    private static void closeAllReaders(Map<Integer, BufferedReader> readers) {
-        readers.values().forEach(reader -> {
+    private static void closeAllReaders(List<RunReader> readers) {
+        readers.forEach(reader -> {
             try {
                 if (reader != null) reader.close();
             } catch (IOException e) {
@@ -77,11 +316,11 @@ public class SortedFileMerger {
 
     public static void main(String[] args) {
         String tempDirectoryPath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/temp/";
-        String mergedFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/merged.txt";
+        String mergedFilePath = "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/merged.run";
 
         // Start timer
         long startTime = System.currentTimeMillis();
-        mergeSortedFiles(tempDirectoryPath, mergedFilePath);
+        mergeSortedFiles(tempDirectoryPath, mergedFilePath, DEFAULT_MAX_FAN_IN, Runtime.getRuntime().availableProcessors());
 
         // End timer and calculate elapsed time
         long endTime = System.currentTimeMillis();
@@ -0,0 +1,146 @@
+package io;
+
+import java.util.Arrays;
+
+/**
+ * Maps terms to dense integer IDs in the order they are first seen.
+ * Lookups hash the characters directly, so a term is only turned into a String the first time it is added.
+ * Uses open addressing with linear probing over a power-of-two table.
+ */
+public class TermDictionary {
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private String[] terms = new String[INITIAL_CAPACITY / 2];
+    private int[] hashes = new int[INITIAL_CAPACITY / 2];
+    private int[] table = new int[INITIAL_CAPACITY]; // termId + 1, 0 marks an empty slot
+    private int size = 0;
+    private long termCharacters = 0;
+
+    /**
+     * Returns the ID of a term, adding the term if it is not in the dictionary yet.
+     * @param term Buffer holding the term.
+     * @param length Length of the term in the buffer.
+     * @return ID of the term.
+     */
+    public int getOrAdd(char[] term, int length) {
+        int hash = hash(term, length);
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int termId = entry - 1;
+            if (hashes[termId] == hash && matches(terms[termId], term, length)) {
+                return termId;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int termId = size++;
+        if (termId == terms.length) {
+            terms = Arrays.copyOf(terms, termId * 2);
+            hashes = Arrays.copyOf(hashes, termId * 2);
+        }
+        terms[termId] = new String(term, 0, length);
+        hashes[termId] = hash;
+        termCharacters += length;
+        table[slot] = termId + 1;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return termId;
+    }
+
+    /**
+     * Returns the ID of a term.
+     * @param term Term to look up.
+     * @return ID of the term, or -1 if it is not in the dictionary.
+     */
+    public int get(String term) {
+        int hash = term.hashCode();
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int termId = entry - 1;
+            if (hashes[termId] == hash && terms[termId].equals(term)) {
+                return termId;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public String getTerm(int termId) {
+        return terms[termId];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Total number of characters of all terms, used to estimate the memory held by the dictionary
+    public long getTermCharacters() {
+        return termCharacters;
+    }
+
+    /**
+     * Computes the lexicographic rank of every term, as ordered by {@link String#compareTo}.
+     * @return Array indexed by term ID holding the rank of the term.
+     */
+    public int[] computeRanks() {
+        String[] sortedTerms = Arrays.copyOf(terms, size);
+        Arrays.parallelSort(sortedTerms);
+        int[] ranks = new int[size];
+        for (int rank = 0; rank < size; rank++) {
+            ranks[get(sortedTerms[rank])] = rank;
+        }
+        return ranks;
+    }
+
+    public void clear() {
+        Arrays.fill(terms, 0, size, null);
+        Arrays.fill(table, 0);
+        size = 0;
+        termCharacters = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] newTable = new int[capacity];
+        int mask = capacity - 1;
+        for (int termId = 0; termId < size; termId++) {
+            int slot = mix(hashes[termId]) & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = termId + 1;
+        }
+        table = newTable;
+    }
+
+    // Same hash as String.hashCode(), so lookups by String and by buffer agree
+    private static int hash(char[] term, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + term[i];
+        }
+        return hash;
+    }
+
+    // Spreads the low-entropy bits of String hashes before masking
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String stored, char[] term, int length) {
+        if (stored.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (stored.charAt(i) != term[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,71 @@
+package io;
+
+import java.io.IOException;
+
+/**
+ * Restricts a run to the postings whose term lies in [lowerTerm, upperTerm).
+ * Terms are only compared when the term changes.
+ */
+public class TermRangeRunReader implements RunReader {
+    private final RunReader run;
+    private final String lowerTerm;
+    private final String upperTerm;
+    private String lastTerm = null;
+    private boolean isInRange = false;
+    private boolean isFinished = false;
+
+    /**
+     * @param run Run to read from, positioned at or before the lower term.
+     * @param lowerTerm Lowest term to return, or null for no lower bound.
+     * @param upperTerm First term not to return, or null for no upper bound.
+     */
+    public TermRangeRunReader(RunReader run, String lowerTerm, String upperTerm) {
+        this.run = run;
+        this.lowerTerm = lowerTerm;
+        this.upperTerm = upperTerm;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (!isFinished && run.next()) {
+            String term = run.getTerm();
+            if (term != lastTerm) {
+                lastTerm = term;
+                if (upperTerm != null && term.compareTo(upperTerm) >= 0) {
+                    break;
+                }
+                isInRange = lowerTerm == null || term.compareTo(lowerTerm) >= 0;
+            }
+            if (isInRange) {
+                return true;
+            }
+        }
+        isFinished = true;
+        return false;
+    }
+
+    @Override
+    public String getTerm() {
+        return run.getTerm();
+    }
+
+    @Override
+    public int getDocId() {
+        return run.getDocId();
+    }
+
+    @Override
+    public int getTermFreq() {
+        return run.getTermFreq();
+    }
+
+    @Override
+    public int[] getPositions() {
+        return run.getPositions();
+    }
+
+    @Override
+    public void close() throws IOException {
+        run.close();
+    }
+}
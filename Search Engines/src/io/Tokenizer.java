@@ -0,0 +1,176 @@
+package io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Single-pass tokenizer for the text lines of a document.
+ * Produces the same terms as removing HTML tags with {@code <[^>]*>}, splitting on {@code [\s.]},
+ * stripping leading and trailing non-letters and lower-casing with {@link Locale#ROOT},
+ * without creating intermediate Strings or compiling regular expressions.
+ * A tokenizer reuses its term buffer, so each worker thread needs its own instance.
+ */
+public class Tokenizer {
+
+    /**
+     * Receives the terms of a line.
+     * The buffer is only valid until the method returns.
+     */
+    public interface TermConsumer {
+        void accept(char[] term, int length);
+    }
+
+    private char[] buffer = new char[64];
+
+    /**
+     * Splits a line into terms and hands each non-empty term to the consumer.
+     * @param line Line of document text.
+     * @param consumer Consumer of the terms.
+     * @return Number of terms found in the line.
+     */
+    public int tokenize(String line, TermConsumer consumer) {
+        int lineLength = line.length();
+        // A '<' only starts a tag when a '>' follows it somewhere on the line
+        int lastTagEnd = line.lastIndexOf('>');
+        int tokenLength = 0;
+        int termCount = 0;
+
+        for (int i = 0; i < lineLength; i++) {
+            char c = line.charAt(i);
+            if (c == '<' && i < lastTagEnd) {
+                i = line.indexOf('>', i + 1); // Skip the tag, text around it stays in the same token
+                continue;
+            }
+            if (isSeparator(c)) {
+                termCount += emit(tokenLength, consumer);
+                tokenLength = 0;
+                continue;
+            }
+            if (tokenLength == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[tokenLength++] = c;
+        }
+        termCount += emit(tokenLength, consumer);
+        return termCount;
+    }
+
+    // Trims non-letters from both ends of the buffered token, lower-cases it and passes it on
+    private int emit(int tokenLength, TermConsumer consumer) {
+        int start = 0;
+        while (start < tokenLength) {
+            int codePoint = Character.codePointAt(buffer, start, tokenLength);
+            if (Character.isLetter(codePoint)) break;
+            start += Character.charCount(codePoint);
+        }
+        int end = tokenLength;
+        while (end > start) {
+            int codePoint = Character.codePointBefore(buffer, end, start);
+            if (Character.isLetter(codePoint)) break;
+            end -= Character.charCount(codePoint);
+        }
+        if (start == end) {
+            return 0;
+        }
+
+        boolean isAscii = true;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] >= 0x80) {
+                isAscii = false;
+                break;
+            }
+        }
+        int length = end - start;
+        if (isAscii) {
+            for (int i = 0; i < length; i++) {
+                char c = buffer[start + i];
+                buffer[i] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            }
+        } else {
+            // Non-ASCII case mappings can be context-sensitive or change the length
+            String lowerCase = new String(buffer, start, length).toLowerCase(Locale.ROOT);
+            length = lowerCase.length();
+            if (length > buffer.length) {
+                buffer = new char[length * 2];
+            }
+            lowerCase.getChars(0, length, buffer, 0);
+        }
+        consumer.accept(buffer, length);
+        return 1;
+    }
+
+    // Matches the [\s.] split class: ASCII whitespace and '.'
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '.' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Reference implementation the tokenizer replaces, kept for comparison.
+     * @param line Line of document text.
+     * @return Terms of the line in order.
+     */
+    static List<String> tokenizeWithRegex(String line) {
+        List<String> terms = new ArrayList<>();
+        for (String split : line.replaceAll("<[^>]*>", "").split("[\\s.]")) {
+            split = split.trim();
+            split = split.replaceAll("^\\P{L}+", "").replaceAll("\\P{L}+$", "");
+            split = split.toLowerCase(Locale.ROOT);
+            if (!split.isEmpty()) {
+                terms.add(split);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Compares the tokenizer against the regular expression implementation over the first lines of a corpus
+     * and reports mismatching lines and the time each implementation takes.
+     */
+    public static void main(String[] args) throws IOException {
+        String srcFilePath = args.length > 0 ? args[0] : "/Users/sammita/Projects/nyu-grad/CS-GY 6913 Web Search Engines/Search Engines/src/files/msmarco-docs.trec";
+        int sampleLines = 1000000;
+
+        List<String> lines = new ArrayList<>(sampleLines);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(srcFilePath), StandardCharsets.UTF_8))) {
+            String line;
+            while (lines.size() < sampleLines && (line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+
+        Tokenizer tokenizer = new Tokenizer();
+        List<String> terms = new ArrayList<>();
+        int mismatches = 0;
+        for (String line : lines) {
+            terms.clear();
+            tokenizer.tokenize(line, (term, length) -> terms.add(new String(term, 0, length)));
+            List<String> expected = tokenizeWithRegex(line);
+            if (!terms.equals(expected)) {
+                if (mismatches++ < 10) {
+                    System.out.println("Mismatch: " + line + "\n  expected: " + expected + "\n  actual:   " + terms);
+                }
+            }
+        }
+        System.out.println("Lines compared: " + lines.size() + ", mismatches: " + mismatches);
+
+        long startTime = System.currentTimeMillis();
+        long regexTerms = 0;
+        for (String line : lines) {
+            regexTerms += tokenizeWithRegex(line).size();
+        }
+        long regexTime = System.currentTimeMillis() - startTime;
+
+        startTime = System.currentTimeMillis();
+        long scannedTerms = 0;
+        for (String line : lines) {
+            scannedTerms += tokenizer.tokenize(line, (term, length) -> { });
+        }
+        long scanTime = System.currentTimeMillis() - startTime;
+        System.out.println("Regex tokenizer: " + regexTerms + " terms in " + regexTime + " ms, "
+                + "scanning tokenizer: " + scannedTerms + " terms in " + scanTime + " ms");
+    }
+}
@@ -4,8 +4,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class Util {
-    // DocumentParser -> temp*.txt -> SortedFileMerger
-    private static final Pattern FILENAME_PATTERN = Pattern.compile("temp(\\d+)\\.txt");
+    // DocumentParser -> temp*.run -> SortedFileMerger
+    private static final Pattern FILENAME_PATTERN = Pattern.compile("temp(\\d+)\\.run");
 
     // Formats time in milliseconds to HH:mm:ss format
     public static String formatTime(long milliseconds) {
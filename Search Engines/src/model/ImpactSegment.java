@@ -0,0 +1,51 @@
+package model;
+/**
+ * A segment of an impact-ordered list: the documents in which a term has the same quantized impact.
+ */
+public class ImpactSegment {
+    private final int impact;
+    private final int postingCount;
+    private final int codec;
+    private final long offset;
+    private final int byteSize;
+
+    /**
+     * @param impact Quantized impact shared by the postings of the segment, from 1 to 255.
+     * @param postingCount Number of postings in the segment.
+     * @param codec ID of the codec of the segment's docId gaps.
+     * @param offset Position of the segment in the impact index file.
+     * @param byteSize Size of the segment in bytes.
+     */
+    public ImpactSegment(int impact, int postingCount, int codec, long offset, int byteSize) {
+        this.impact = impact;
+        this.postingCount = postingCount;
+        this.codec = codec;
+        this.offset = offset;
+        this.byteSize = byteSize;
+    }
+
+    public int getImpact() {
+        return impact;
+    }
+
+    public int getPostingCount() {
+        return postingCount;
+    }
+
+    public int getCodec() {
+        return codec;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getByteSize() {
+        return byteSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Impact: %d, Postings: %d, Offset: %d", impact, postingCount, offset);
+    }
+}
@@ -1,34 +1,83 @@
 package model;
-import java.io.Serial;
-import java.io.Serializable;
-public class Lexicon implements Serializable  {
-    @Serial
-    private static final long serialVersionUID = 1L;
+public class Lexicon {
     private long startOffset;
     private long endOffset;
     private int blockCount;
     private int documentFrequency;
-    private long metadataPosition;
+    // Largest BM25 score of any posting of the term
+    private float maxScore;
+    // Position of the term's impact-ordered list, 0 when the impact index has no list for the term
+    private long impactOffset;
+    // Position of the term's positions list, meaningful only when the index was built with positions
+    private long positionsOffset;
+    // Postings of a list short enough to be kept in the entry instead of the index file, null otherwise
+    private int[] inlineDocIds;
+    private int[] inlineTermFreqs;
 
-    public Lexicon(long startOffset, long endOffset, int blockCount, int documentFrequency, long metadataPosition) {
+    public Lexicon(long startOffset, long endOffset, int blockCount, int documentFrequency, float maxScore) {
         this.startOffset = startOffset;
         this.endOffset = endOffset;
         this.blockCount = blockCount;
         this.documentFrequency = documentFrequency;
-        this.metadataPosition = metadataPosition;
+        this.maxScore = maxScore;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
     }
 
     public int getDocumentFrequency() {
         return documentFrequency;
     }
 
-    public long getMetadataPosition() {
-        return metadataPosition;
+    public float getMaxScore() {
+        return maxScore;
+    }
+
+    public long getImpactOffset() {
+        return impactOffset;
+    }
+
+    public void setImpactOffset(long impactOffset) {
+        this.impactOffset = impactOffset;
+    }
+
+    public long getPositionsOffset() {
+        return positionsOffset;
+    }
+
+    public void setPositionsOffset(long positionsOffset) {
+        this.positionsOffset = positionsOffset;
+    }
+
+    public boolean isInline() {
+        return inlineDocIds != null;
+    }
+
+    public int[] getInlineDocIds() {
+        return inlineDocIds;
+    }
+
+    public int[] getInlineTermFreqs() {
+        return inlineTermFreqs;
+    }
+
+    public void setInlinePostings(int[] docIds, int[] termFreqs) {
+        this.inlineDocIds = docIds;
+        this.inlineTermFreqs = termFreqs;
     }
 
     @Override
     public String toString() {
-        return String.format("Start: %d, End: %d, Blocks: %d, DocFreq: %d, MetaOffset: %d",
-                startOffset, endOffset, blockCount, documentFrequency, metadataPosition);
+        return String.format("Start: %d, End: %d, Blocks: %d, DocFreq: %d, MaxScore: %f",
+                startOffset, endOffset, blockCount, documentFrequency, maxScore);
     }
 }
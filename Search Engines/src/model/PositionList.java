@@ -0,0 +1,72 @@
+package model;
+
+/**
+ * Represents the positions list of a term, opened for reading alongside the term's {@link TermIndexList}.
+ * The block entries are decoded on opening; the positions of a block are decoded as a whole the first time
+ * a posting of that block asks for its positions.
+ */
+public class PositionList {
+    private final String term;
+    public final byte[] blockCodecs;
+    public final long[] blockOffsets;   // position of the block in the positions file
+    public final int[] blockSizes;
+
+    // The decoded block: position gaps of its postings, and where the gaps of every posting start
+    private int currentBlockIndex = -1;
+    private int[] positionGaps = new int[1 << 10];
+    private final int[] postingStarts;
+    private byte[] blockBytes = new byte[1 << 10];
+
+    /**
+     * Constructs a PositionList from the block entries of its list.
+     * @param term The term associated with this positions list.
+     * @param blockCodecs Codec of every block.
+     * @param blockOffsets Position of every block in the positions file.
+     * @param blockSizes Size of every block in bytes.
+     * @param blockSize Number of postings in every block but the last.
+     */
+    public PositionList(String term, byte[] blockCodecs, long[] blockOffsets, int[] blockSizes, int blockSize) {
+        this.term = term;
+        this.blockCodecs = blockCodecs;
+        this.blockOffsets = blockOffsets;
+        this.blockSizes = blockSizes;
+        this.postingStarts = new int[blockSize + 1];
+    }
+
+    public String getTerm() {
+        return term;
+    }
+
+    public int getCurrentBlockIndex() {
+        return currentBlockIndex;
+    }
+
+    public void setCurrentBlockIndex(int currentBlockIndex) {
+        this.currentBlockIndex = currentBlockIndex;
+    }
+
+    public int[] getPositionGaps() {
+        return positionGaps;
+    }
+
+    public void setPositionGaps(int[] positionGaps) {
+        this.positionGaps = positionGaps;
+    }
+
+    public int[] getPostingStarts() {
+        return postingStarts;
+    }
+
+    public byte[] getBlockBytes() {
+        return blockBytes;
+    }
+
+    public void setBlockBytes(byte[] blockBytes) {
+        this.blockBytes = blockBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Term: " + term + ", Blocks: " + blockCodecs.length;
+    }
+}
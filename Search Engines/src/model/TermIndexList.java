@@ -1,22 +1,81 @@
 package model;
+
+import java.util.BitSet;
+
 /**
- * Represents an inverted list for a term in an index, containing metadata
- * about document IDs and frequencies.
+ * Represents an inverted list for a term in an index, opened for traversal.
+ * Holds the header of the list, read in one piece when the list is opened, and the block the list is positioned in.
+ * The skip table is decoded on opening; the entries of the blocks are decoded one skip group at a time,
+ * the first time the list is positioned in that group.
  */
 public class TermIndexList {
     private String term;
-    private Metadata metadata;
-    private int currentBlockIndex;
+    // Lexicon entry the list was opened from, so scoring does not look the term up again
+    private final Lexicon lexicon;
+    private final long startOffset;
+    private final int blockCount;
+    private final int postingCount;
+    // Start of the list as read on opening: the whole header, and the first blocks when they fit
+    private final byte[] listBytes;
+
+    // Skip table, one entry per group of blocks
+    public final int[] groupLastDocIds;
+    public final int[] groupEntryOffsets;   // position of the group's block entries in listBytes
+    public final long[] groupBlockOffsets;  // position of the group's first block from the start of the list
+    public final boolean[] isGroupDecoded;
+
+    // Block entries, filled in per group
+    public final int[] lastDocIds;
+    public final int[] docIdBlockSizes;
+    public final int[] termFreqBlockSizes;
+    public final byte[] blockCodecs;
+    public final long[] blockOffsets;       // position of the block from the start of the list
+    public final float[] blockMaxScores;
+
+    // The current block, its frequencies decoded only when asked for
+    private final int[] docIds;
+    private final int[] termFreqs;
+    private byte[] blockBytes;
+    private int blockBytesOffset;
+    private boolean isTermFreqDecoded;
+    private int currentBlockIndex = -1;
     private int positionInCurrentBlock;
+    // Documents skipped while traversing the list, null to visit every posting
+    private BitSet deletedDocuments;
 
     /**
-     * Constructs a TermIndexList with the given term and associated metadata.
+     * Constructs a TermIndexList from the header of its list.
      * @param term The term associated with this inverted list.
-     * @param metadata The metadata associated with the term in the index.
+     * @param lexicon Lexicon entry of the term.
+     * @param startOffset Position of the list in the index file.
+     * @param listBytes Bytes read from the start of the list, covering at least its header.
+     * @param blockCount Number of blocks in the list.
+     * @param postingCount Number of postings in the list.
+     * @param blockSize Number of postings in every block but the last.
+     * @param groupLastDocIds Last document ID of every skip group.
+     * @param groupEntryOffsets Position of the block entries of every skip group in listBytes.
+     * @param groupBlockOffsets Position of the first block of every skip group from the start of the list.
      */
-    public TermIndexList(String term, Metadata metadata) {
+    public TermIndexList(String term, Lexicon lexicon, long startOffset, byte[] listBytes, int blockCount, int postingCount, int blockSize,
+                         int[] groupLastDocIds, int[] groupEntryOffsets, long[] groupBlockOffsets) {
         this.term = term;
-        this.metadata = metadata;
+        this.lexicon = lexicon;
+        this.startOffset = startOffset;
+        this.listBytes = listBytes;
+        this.blockCount = blockCount;
+        this.postingCount = postingCount;
+        this.groupLastDocIds = groupLastDocIds;
+        this.groupEntryOffsets = groupEntryOffsets;
+        this.groupBlockOffsets = groupBlockOffsets;
+        this.isGroupDecoded = new boolean[groupLastDocIds.length];
+        this.lastDocIds = new int[blockCount];
+        this.docIdBlockSizes = new int[blockCount];
+        this.termFreqBlockSizes = new int[blockCount];
+        this.blockCodecs = new byte[blockCount];
+        this.blockOffsets = new long[blockCount];
+        this.blockMaxScores = new float[blockCount];
+        this.docIds = new int[blockSize];
+        this.termFreqs = new int[blockSize];
     }
 
     public String getTerm() {
@@ -27,20 +86,83 @@ public class TermIndexList {
         this.term = term;
     }
 
-    public Metadata getMetadata() {
-        return metadata;
+    public Lexicon getLexicon() {
+        return lexicon;
     }
 
-    public void setMetadata(Metadata metadata) {
-        this.metadata = metadata;
+    public long getStartOffset() {
+        return startOffset;
     }
 
-    public int getCurrentBlockIndex() {
-        return currentBlockIndex;
+    public byte[] getListBytes() {
+        return listBytes;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public int getPostingCount() {
+        return postingCount;
+    }
+
+    public int getMaxDocId() {
+        return groupLastDocIds[groupLastDocIds.length - 1];
+    }
+
+    // Number of postings in a block, all blocks but the last being full
+    public int getBlockPostingCount(int block) {
+        return block < blockCount - 1 ? docIds.length : postingCount - docIds.length * (blockCount - 1);
+    }
+
+    public int[] getDocIds() {
+        return docIds;
+    }
+
+    public int[] getTermFreqs() {
+        return termFreqs;
     }
 
-    public void setCurrentBlockIndex(int currentBlockIndex) {
-        this.currentBlockIndex = currentBlockIndex;
+    public byte[] getBlockBytes() {
+        return blockBytes;
+    }
+
+    public int getBlockBytesOffset() {
+        return blockBytesOffset;
+    }
+
+    /**
+     * Positions the list at the start of a block whose docIds have been decoded.
+     * @param block Index of the block.
+     * @param bytes Buffer holding the compressed block.
+     * @param offset Position of the block in the buffer.
+     */
+    public void setCurrentBlock(int block, byte[] bytes, int offset) {
+        this.currentBlockIndex = block;
+        this.positionInCurrentBlock = 0;
+        this.blockBytes = bytes;
+        this.blockBytesOffset = offset;
+        this.isTermFreqDecoded = false;
+    }
+
+    public boolean isTermFreqDecoded() {
+        return isTermFreqDecoded;
+    }
+
+    public void setTermFreqDecoded(boolean isTermFreqDecoded) {
+        this.isTermFreqDecoded = isTermFreqDecoded;
+    }
+
+    public BitSet getDeletedDocuments() {
+        return deletedDocuments;
+    }
+
+    public void setDeletedDocuments(BitSet deletedDocuments) {
+        this.deletedDocuments = deletedDocuments;
+    }
+
+    public int getCurrentBlockIndex() {
+        return currentBlockIndex;
     }
 
     public int getPositionInCurrentBlock() {
@@ -53,6 +175,6 @@ public class TermIndexList {
 
     @Override
     public String toString() {
-        return "Term: " + term + ", Metadata: " + metadata;
+        return "Term: " + term + ", Blocks: " + blockCount + ", Postings: " + postingCount;
     }
 }